@@ -0,0 +1,77 @@
+package com.shruthi.vault.benchmark;
+
+import com.shruthi.vault.SecureFileVaultApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Boots the full application against an in-memory H2 database and a throwaway upload directory,
+ * for benchmarks that need real beans (repositories, the security filter) and for the load test.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final Path uploadDir;
+
+    private BenchmarkApplication(ConfigurableApplicationContext context, Path uploadDir) {
+        this.context = context;
+        this.uploadDir = uploadDir;
+    }
+
+    /**
+     * @param port HTTP port, or 0 for a random one
+     * @param overrides further {@code key=value} properties
+     */
+    static BenchmarkApplication start(int port, String... overrides) throws IOException {
+        Path uploadDir = Files.createTempDirectory("vault-bench-");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.shruthi.vault", "WARN");
+        properties.put("file.upload-dir", uploadDir.toString());
+        properties.put("server.port", String.valueOf(port));
+        for (String override : overrides) {
+            int eq = override.indexOf('=');
+            properties.put(override.substring(0, eq), override.substring(eq + 1));
+        }
+
+        // Devtools decides on restarts before the environment exists, so only a system property works
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        // As command-line arguments so they take precedence over application.properties
+        String[] args = properties.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new);
+        return new BenchmarkApplication(SpringApplication.run(SecureFileVaultApplication.class, args), uploadDir);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    int port() {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port", "0"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        try (Stream<Path> paths = Files.walk(uploadDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
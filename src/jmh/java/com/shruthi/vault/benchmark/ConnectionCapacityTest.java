@@ -0,0 +1,170 @@
+package com.shruthi.vault.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares how many concurrent connections the server can hold with platform and with virtual
+ * request threads. Opens {@code stalled} downloads of a large file that never read their
+ * response, so every one of them blocks a request thread in a socket write, then times a burst
+ * of logins. On the platform pool the logins queue behind the stalled downloads once Tomcat's
+ * workers are used up; on virtual threads they go straight through.
+ *
+ * <pre>
+ * -Dcapacity.stalled=400          stalled downloads (Tomcat's platform pool has 200 threads)
+ * -Dcapacity.logins=20            logins timed while they are open
+ * -Dcapacity.file-size=33554432   bytes in the downloaded file; must exceed the socket buffers
+ * -Dcapacity.timeout=10           seconds before a login counts as timed out
+ * </pre>
+ */
+public final class ConnectionCapacityTest {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern SESSION = Pattern.compile("\"sessionId\"\\s*:\\s*\"([^\"]+)\"");
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        int stalled = Integer.getInteger("capacity.stalled", 400);
+        int logins = Integer.getInteger("capacity.logins", 20);
+        int fileSize = Integer.getInteger("capacity.file-size", 32 * 1024 * 1024);
+        int timeout = Integer.getInteger("capacity.timeout", 10);
+
+        ConnectionCapacityTest test = new ConnectionCapacityTest();
+        List<String> results = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            try (BenchmarkApplication application = BenchmarkApplication.start(0, "spring.threads.virtual.enabled=" + virtual)) {
+                results.add(test.run(application.port(), virtual ? "virtual" : "platform", stalled, logins, fileSize, timeout));
+            }
+        }
+
+        System.out.printf("%n%-9s %8s %7s %9s %8s %8s %8s%n", "threads", "stalled", "logins", "timed out", "p50 ms", "p99 ms", "max ms");
+        results.forEach(System.out::println);
+        System.exit(0);
+    }
+
+    private String run(int port, String mode, int stalled, int logins, int fileSize, int timeout) throws Exception {
+        String base = "http://localhost:" + port;
+        String token = register(base);
+        uploadLargeFile(base, token, fileSize);
+
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < stalled; i++) {
+                sockets.add(openStalledDownload(port, token));
+            }
+            // Let the server fill the socket buffers and block in write
+            Thread.sleep(3000);
+
+            ExecutorService pool = Executors.newFixedThreadPool(logins);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < logins; i++) {
+                futures.add(pool.submit(() -> timeLogin(base, timeout)));
+            }
+            long[] latencies = new long[logins];
+            int timedOut = 0;
+            for (int i = 0; i < logins; i++) {
+                latencies[i] = futures.get(i).get();
+                if (latencies[i] < 0) timedOut++;
+            }
+            pool.shutdown();
+
+            long[] completed = Arrays.stream(latencies).filter(l -> l >= 0).sorted().toArray();
+            return String.format("%-9s %8d %7d %9d %8.1f %8.1f %8.1f", mode, stalled, logins, timedOut,
+                    percentile(completed, 50), percentile(completed, 99),
+                    completed.length == 0 ? 0 : completed[completed.length - 1] / 1e6);
+        } finally {
+            for (Socket socket : sockets) socket.close();
+        }
+    }
+
+    private String register(String base) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/api/v1/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"capacity\",\"password\":\"capacity\",\"role\":\"USER\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(response.body());
+        if (!matcher.find()) throw new IllegalStateException("Register failed: " + response.body());
+        return matcher.group(1);
+    }
+
+    private void uploadLargeFile(String base, String token, int fileSize) throws IOException, InterruptedException {
+        String init = "{\"filename\":\"large.bin\",\"totalSize\":" + fileSize + ",\"chunkSize\":" + fileSize + "}";
+        HttpResponse<String> session = client.send(HttpRequest.newBuilder(URI.create(base + "/api/v1/file/upload/sessions"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(init))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = SESSION.matcher(session.body());
+        if (!matcher.find()) throw new IllegalStateException("Upload init failed: " + session.body());
+        String sessionUrl = base + "/api/v1/file/upload/sessions/" + matcher.group(1);
+
+        byte[] content = new byte[fileSize];
+        new Random(1).nextBytes(content);
+        client.send(HttpRequest.newBuilder(URI.create(sessionUrl + "/chunks/0"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/octet-stream")
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(content))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        HttpResponse<String> commit = client.send(HttpRequest.newBuilder(URI.create(sessionUrl + "/commit"))
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (commit.statusCode() != 200) throw new IllegalStateException("Upload commit failed: " + commit.body());
+    }
+
+    /**
+     * Sends the request and never reads, like a client on a very slow link.
+     */
+    private static Socket openStalledDownload(int port, String token) throws IOException {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("localhost", port));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /api/v1/file/download/large.bin HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Authorization: Bearer " + token + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+
+    /**
+     * @return nanoseconds until the login response, or -1 if it timed out
+     */
+    private long timeLogin(String base, int timeout) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/v1/auth/login"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(timeout))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"capacity\",\"password\":\"capacity\"}"))
+                .build();
+        long started = System.nanoTime();
+        try {
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+            return System.nanoTime() - started;
+        } catch (HttpTimeoutException e) {
+            return -1;
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
@@ -0,0 +1,58 @@
+package com.shruthi.vault.benchmark;
+
+import com.shruthi.vault.dto.RegisterRequest;
+import com.shruthi.vault.model.Role;
+import com.shruthi.vault.security.JwtAuthFilter;
+import com.shruthi.vault.service.AuthService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through {@link JwtAuthFilter} with the application's real beans:
+ * token verification, principal lookup and SecurityContext population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private BenchmarkApplication application;
+    private JwtAuthFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setup() throws IOException {
+        application = BenchmarkApplication.start(0);
+        filter = application.bean(JwtAuthFilter.class);
+        String token = application.bean(AuthService.class)
+                .register(new RegisterRequest("bench", "bench", Role.USER))
+                .getToken();
+        authorization = "Bearer " + token;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public Object authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/file/list");
+        request.addHeader("Authorization", authorization);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.shruthi.vault.benchmark;
+
+import com.shruthi.vault.model.Role;
+import com.shruthi.vault.security.JwtService;
+import com.shruthi.vault.security.VaultPrincipal;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and verification in {@link JwtService}: a full HMAC check versus a hit in the
+ * verified-claims cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtService cached;
+    private JwtService uncached;
+    private VaultPrincipal principal;
+    private String token;
+
+    @Setup
+    public void setup() {
+        cached = new JwtService(10_000, Duration.ofMinutes(5), Duration.ofHours(24), new SimpleMeterRegistry());
+        // A zero TTL expires every entry on insert, so each parse verifies the signature
+        uncached = new JwtService(10_000, Duration.ZERO, Duration.ofHours(24), new SimpleMeterRegistry());
+        principal = new VaultPrincipal(1L, "bench", Role.USER);
+        token = cached.generateToken(principal);
+        cached.parseToken(token);
+    }
+
+    @Benchmark
+    public String generate() {
+        return cached.generateToken(principal);
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return uncached.parseToken(token);
+    }
+
+    @Benchmark
+    public Claims verifyCached() {
+        return cached.parseToken(token);
+    }
+}
@@ -0,0 +1,237 @@
+package com.shruthi.vault.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load test against the REST API: worker threads issue a mix of downloads, listings,
+ * searches and uploads as fast as responses come back, and per-endpoint latency percentiles are
+ * printed at the end. Runs against {@code -Dvault.url} or, if unset, an embedded instance on H2.
+ *
+ * <pre>
+ * -Dvault.url=http://localhost:8080   target (default: start one in-process)
+ * -Dload.threads=32                   concurrent clients
+ * -Dload.users=8                      distinct accounts the clients are spread over
+ * -Dload.files=20                     files uploaded per user before the run
+ * -Dload.file-size=65536              bytes per file
+ * -Dload.warmup=10                    seconds of unrecorded warmup
+ * -Dload.duration=30                  seconds recorded
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+
+    enum Operation {DOWNLOAD, LIST, LIST_PAGE, SEARCH, UPLOAD}
+
+    // Relative weights of the mix, in Operation order
+    private static final int[] WEIGHTS = {40, 10, 20, 20, 10};
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newCachedThreadPool())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+    private final byte[] content;
+
+    private LoadTest(String baseUrl, int fileSize) {
+        this.baseUrl = baseUrl;
+        this.content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("load.threads", 32);
+        int users = Integer.getInteger("load.users", 8);
+        int files = Integer.getInteger("load.files", 20);
+        int fileSize = Integer.getInteger("load.file-size", 65536);
+        int warmup = Integer.getInteger("load.warmup", 10);
+        int duration = Integer.getInteger("load.duration", 30);
+
+        String url = System.getProperty("vault.url");
+        BenchmarkApplication embedded = null;
+        if (url == null) {
+            embedded = BenchmarkApplication.start(0);
+            url = "http://localhost:" + embedded.port();
+        }
+
+        try {
+            LoadTest test = new LoadTest(url, fileSize);
+            List<String> tokens = test.prepare(users, files);
+            System.out.printf("%s: %d threads, %d users x %d files of %d bytes, %ds warmup, %ds measured%n",
+                    url, threads, users, files, fileSize, warmup, duration);
+
+            test.run(tokens, files, threads, warmup, false);
+            Map<Operation, Recorder> results = test.run(tokens, files, threads, duration, true);
+            report(results, duration);
+        } finally {
+            if (embedded != null) embedded.close();
+            System.exit(0);
+        }
+    }
+
+    private List<String> prepare(int users, int files) throws Exception {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        List<String> tokens = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            String username = "load-" + runId + "-" + u;
+            String body = "{\"username\":\"" + username + "\",\"password\":\"load\",\"role\":\"USER\"}";
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/auth/register"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Matcher matcher = TOKEN.matcher(response.body());
+            if (response.statusCode() != 200 || !matcher.find()) {
+                throw new IllegalStateException("Could not register " + username + ": " + response.statusCode() + " " + response.body());
+            }
+            String token = matcher.group(1);
+            tokens.add(token);
+            for (int f = 0; f < files; f++) {
+                int status = send(upload(token, "file-" + f + ".bin", false));
+                if (status != 200) throw new IllegalStateException("Seed upload failed: " + status);
+            }
+        }
+        return tokens;
+    }
+
+    private Map<Operation, Recorder> run(List<String> tokens, int files, int threads, int seconds, boolean record)
+            throws InterruptedException {
+        Map<Operation, Recorder> results = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) results.put(operation, new Recorder());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            String token = tokens.get(t % tokens.size());
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Operation operation = pick(random);
+                    HttpRequest request = request(operation, token, random.nextInt(files));
+                    long started = System.nanoTime();
+                    int status;
+                    try {
+                        status = send(request);
+                    } catch (IOException e) {
+                        status = -1;
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (record) results.get(operation).record(System.nanoTime() - started, status / 100 == 2);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        return results;
+    }
+
+    private static Operation pick(ThreadLocalRandom random) {
+        int roll = random.nextInt(Arrays.stream(WEIGHTS).sum());
+        for (Operation operation : Operation.values()) {
+            roll -= WEIGHTS[operation.ordinal()];
+            if (roll < 0) return operation;
+        }
+        return Operation.DOWNLOAD;
+    }
+
+    private HttpRequest request(Operation operation, String token, int file) {
+        return switch (operation) {
+            case DOWNLOAD -> get(token, "/api/v1/file/download/file-" + file + ".bin");
+            case LIST -> get(token, "/api/v1/file/list");
+            case LIST_PAGE -> get(token, "/api/v1/file/list/page?size=50");
+            case SEARCH -> get(token, "/api/v1/file/search?keyword=file-1");
+            case UPLOAD -> upload(token, "file-" + file + ".bin", true);
+        };
+    }
+
+    private HttpRequest get(String token, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest upload(String token, String filename, boolean overwrite) {
+        String boundary = UUID.randomUUID().toString();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/file/upload?overwrite=" + overwrite))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static void report(Map<Operation, Recorder> results, int seconds) {
+        System.out.printf("%n%-10s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Recorder all = new Recorder();
+        for (Map.Entry<Operation, Recorder> entry : results.entrySet()) {
+            print(entry.getKey().name(), entry.getValue(), seconds);
+            all.addAll(entry.getValue());
+        }
+        print("TOTAL", all, seconds);
+    }
+
+    private static void print(String name, Recorder recorder, int seconds) {
+        long[] sorted = recorder.sorted();
+        System.out.printf("%-10s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                name, sorted.length, recorder.errors, (double) sorted.length / seconds,
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /**
+     * Every latency of one operation, in nanoseconds; small enough to keep raw for exact percentiles.
+     */
+    private static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        synchronized void record(long nanos, boolean ok) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            if (!ok) errors++;
+        }
+
+        synchronized void addAll(Recorder other) {
+            long[] theirs = other.sorted();
+            for (long nanos : theirs) record(nanos, true);
+            errors += other.errors;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(latencies, count);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.shruthi.vault.benchmark;
+
+import com.shruthi.vault.dto.FileSummary;
+import com.shruthi.vault.dto.RegisterRequest;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.Role;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.search.FilenameIndex;
+import com.shruthi.vault.search.IndexedFile;
+import com.shruthi.vault.service.AuthService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * List and search queries of {@link FileRecordRepository} on embedded H2, for one owner with
+ * {@code files} records, next to the in-memory {@link FilenameIndex} that serves search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final String QUERY = "report-12";
+
+    @Param({"10000"})
+    public int files;
+
+    private BenchmarkApplication application;
+    private FileRecordRepository repository;
+    private FilenameIndex index;
+    private TransactionTemplate readOnly;
+    private Long ownerId;
+
+    @Setup
+    public void setup() throws IOException {
+        application = BenchmarkApplication.start(0);
+        repository = application.bean(FileRecordRepository.class);
+        index = application.bean(FilenameIndex.class);
+        readOnly = new TransactionTemplate(application.bean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+
+        application.bean(AuthService.class).register(new RegisterRequest("bench", "bench", Role.USER));
+        ownerId = application.bean(UserRepository.class).findByUsername("bench").orElseThrow().getId();
+
+        List<Object[]> rows = new ArrayList<>(files);
+        LocalDateTime start = LocalDateTime.now().minusDays(30);
+        for (int i = 0; i < files; i++) {
+            rows.add(new Object[]{"report-" + i + ".pdf", "sha256/" + i, 1024L, "application/pdf",
+                    Timestamp.valueOf(start.plusSeconds(i)), ownerId});
+        }
+        application.bean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO file_records (filename, storage_path, size, content_type, upload_time, owner_id, deleted, purge_pending) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, false, false)", rows);
+        // Seeded behind the entity listeners' back, so index from the table again
+        index.rebuild();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        application.close();
+    }
+
+    @Benchmark
+    public List<FileRecord> listAll() {
+        return repository.findByOwnerIdAndDeletedFalse(ownerId);
+    }
+
+    @Benchmark
+    public List<FileSummary> listFirstPage() {
+        return readOnly.execute(status -> {
+            try (Stream<FileSummary> rows = repository.streamNewest(ownerId, PageRequest.of(0, 100))) {
+                return rows.toList();
+            }
+        });
+    }
+
+    @Benchmark
+    public List<FileRecord> searchDatabase() {
+        return repository.findByOwnerIdAndFilenameContainingIgnoreCaseAndDeletedFalse(ownerId, QUERY);
+    }
+
+    @Benchmark
+    public List<IndexedFile> searchIndex() {
+        return index.search(QUERY, FilenameIndex.Mode.SUBSTRING, ownerId, 0, 100);
+    }
+}
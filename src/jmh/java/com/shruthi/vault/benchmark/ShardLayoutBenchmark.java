@@ -0,0 +1,112 @@
+package com.shruthi.vault.benchmark;
+
+import com.shruthi.vault.storage.ShardLayout;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Create, lookup and delete latency of blob files among {@code files} others, in one flat
+ * directory versus the sharded layouts. Populating the tree takes long (hours at 10M on most
+ * disks), so each population is kept under {@code -Dbenchmark.dir} (default: the temp
+ * directory) and reused by later runs; delete it by hand when done.
+ *   mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ShardLayout -p files=1000000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ShardLayoutBenchmark {
+
+    @Param({"10000000"})
+    public int files;
+
+    // depth x width; 0x1 is a single flat directory
+    @Param({"0x1", "1x2", "2x2"})
+    public String layout;
+
+    private ShardLayout shards;
+    private Path root;
+    private long next;
+    private final List<Long> created = new ArrayList<>();
+    private final List<Long> deleted = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void populate() throws IOException {
+        String[] parts = layout.split("x");
+        shards = new ShardLayout(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        root = Paths.get(System.getProperty("benchmark.dir", System.getProperty("java.io.tmpdir")),
+                "vault-shard-bench", layout + "-" + files);
+        Path done = root.resolve(".populated");
+        if (!Files.exists(done)) {
+            for (long i = 0; i < files; i++) create(i);
+            Files.createFile(done);
+        }
+        next = files;
+    }
+
+    // Keeps the population at exactly `files` between iterations
+    @TearDown(Level.Iteration)
+    public void restore() throws IOException {
+        for (long i : created) Files.deleteIfExists(shards.locate(root, hash(i)));
+        for (long i : deleted) create(i);
+        created.clear();
+        deleted.clear();
+    }
+
+    @Benchmark
+    public Path create() throws IOException {
+        long i = next++;
+        created.add(i);
+        return create(i);
+    }
+
+    @Benchmark
+    public boolean lookup() {
+        return Files.exists(shards.locate(root, hash(ThreadLocalRandom.current().nextLong(files))));
+    }
+
+    @Benchmark
+    public boolean delete() throws IOException {
+        long i = ThreadLocalRandom.current().nextLong(files);
+        boolean removed = Files.deleteIfExists(shards.locate(root, hash(i)));
+        if (removed) deleted.add(i);
+        return removed;
+    }
+
+    private Path create(long i) throws IOException {
+        Path file = shards.locate(root, hash(i));
+        Files.createDirectories(file.getParent());
+        try {
+            return Files.createFile(file);
+        } catch (FileAlreadyExistsException e) {
+            // Left by an interrupted population
+            return file;
+        }
+    }
+
+    // A sha256-shaped name, cheap enough not to dominate the file system calls being measured
+    private static String hash(long i) {
+        StringBuilder hex = new StringBuilder(64);
+        long z = i;
+        for (int word = 0; word < 4; word++) {
+            z += 0x9e3779b97f4a7c15L;
+            long x = z;
+            x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+            x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+            hex.append(HexFormat.of().toHexDigits(x ^ (x >>> 31)));
+        }
+        return hex.toString();
+    }
+}
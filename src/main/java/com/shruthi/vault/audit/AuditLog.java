@@ -0,0 +1,185 @@
+package com.shruthi.vault.audit;
+
+import com.shruthi.vault.model.AuditAction;
+import com.shruthi.vault.security.VaultPrincipal;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Audit trail. Recording an event only builds a small record and offers it to a lock-free ring
+ * buffer, so the request path never waits on the database; a single background writer drains
+ * the buffer and inserts the events in JDBC batches. If the buffer is full (the database is
+ * down or far behind) events are dropped and counted rather than slowing requests down.
+ */
+@Slf4j
+@Component
+public class AuditLog {
+
+    private static final String INSERT = "INSERT INTO audit_events (occurred_at, user_id, username, action, target, detail, client_ip) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_VALUE_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditRingBuffer buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running;
+    private Thread writer;
+
+    public AuditLog(JdbcTemplate jdbcTemplate,
+                    @Value("${audit.buffer-size:65536}") int bufferSize,
+                    @Value("${audit.batch-size:500}") int batchSize,
+                    @Value("${audit.flush-interval:200ms}") Duration flushInterval,
+                    MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new AuditRingBuffer(bufferSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        FunctionCounter.builder("vault.audit.dropped", dropped, AtomicLong::get)
+                .description("Audit events dropped because the buffer was full")
+                .register(registry);
+    }
+
+    /**
+     * Records an action by the currently authenticated user.
+     */
+    public void record(AuditAction action, String target) {
+        record(action, target, null);
+    }
+
+    public void record(AuditAction action, String target, String detail) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof VaultPrincipal principal) {
+            record(principal.getId(), principal.getUsername(), action, target, detail);
+        } else {
+            record(null, authentication == null ? null : authentication.getName(), action, target, detail);
+        }
+    }
+
+    /**
+     * Records an action on behalf of an explicitly named user (e.g. logins, before there is an
+     * authenticated principal).
+     */
+    public void record(Long userId, String username, AuditAction action, String target, String detail) {
+        AuditRecord record = new AuditRecord(LocalDateTime.now(), userId, username, action, clip(target), clip(detail), clientIp());
+        if (!buffer.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // Fits the VARCHAR(255) columns; one oversized value would otherwise fail its whole batch
+    private static String clip(String value) {
+        return value == null || value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH - 3) + "...";
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // The table is created with the JPA schema, so start writing once the application is up
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!started.compareAndSet(false, true)) return;
+        running = true;
+        writer = new Thread(this::drainLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void drainLoop() {
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        long reportedDrops = 0;
+        while (true) {
+            boolean stopping = !running;
+            int drained = buffer.drainTo(batch, batchSize);
+            if (drained > 0) {
+                write(batch);
+                batch.clear();
+            }
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                log.warn("Audit buffer full: {} events dropped so far", drops);
+                reportedDrops = drops;
+            }
+
+            if (stopping) {
+                // Final pass after stop(): everything buffered before it has been written
+                if (buffer.drainTo(batch, batchSize) == 0) return;
+                write(batch);
+                batch.clear();
+                continue;
+            }
+            // A full batch means more is probably waiting; otherwise wait for the next flush
+            if (drained < batchSize) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+    }
+
+    private void write(List<AuditRecord> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, r) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(r.occurredAt()));
+                    ps.setObject(2, r.userId());
+                    ps.setString(3, r.username());
+                    ps.setString(4, r.action().name());
+                    ps.setString(5, r.target());
+                    ps.setString(6, r.detail());
+                    ps.setString(7, r.clientIp());
+                });
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    log.error("Dropping {} audit events after {} failed attempts", batch.size(), attempt, e);
+                    return;
+                }
+                log.warn("Audit batch insert failed (attempt {}), retrying", attempt, e);
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(attempt));
+            }
+        }
+    }
+
+    private static String clientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet) {
+            return servlet.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+}
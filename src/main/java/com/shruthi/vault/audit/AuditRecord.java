@@ -0,0 +1,12 @@
+package com.shruthi.vault.audit;
+
+import com.shruthi.vault.model.AuditAction;
+
+import java.time.LocalDateTime;
+
+/**
+ * An audit event as captured on the request thread, before it is persisted.
+ */
+public record AuditRecord(LocalDateTime occurredAt, Long userId, String username, AuditAction action,
+                          String target, String detail, String clientIp) {
+}
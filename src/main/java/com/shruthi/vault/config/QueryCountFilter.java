@@ -0,0 +1,58 @@
+package com.shruthi.vault.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Reports how many SQL statements each request issued (authentication included). The count is
+ * recorded in the {@code vault.request.queries} summary, tagged by method and URI template,
+ * exposed as the {@code queryCount} request attribute and logged at DEBUG.
+ */
+@Slf4j
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String ATTRIBUTE = "queryCount";
+
+    private final MeterRegistry registry;
+
+    public QueryCountFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        QueryCountInspector.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int queries = QueryCountInspector.current();
+            request.setAttribute(ATTRIBUTE, queries);
+            summary(request).record(queries);
+            log.debug("{} {} -> {} SQL statement(s)", request.getMethod(), request.getRequestURI(), queries);
+        }
+    }
+
+    private DistributionSummary summary(HttpServletRequest request) {
+        // The template, not the raw URI, so filenames in paths don't multiply the series
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return DistributionSummary.builder("vault.request.queries")
+                .description("SQL statements issued per request")
+                .tag("method", request.getMethod())
+                .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+}
@@ -1,6 +1,9 @@
 package com.shruthi.vault.config;
 
+import com.shruthi.vault.ratelimit.RateLimitFilter;
+import com.shruthi.vault.security.CustomUserDetailsService;
 import com.shruthi.vault.security.JwtAuthFilter;
+import com.shruthi.vault.security.PasswordHasher;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,9 +15,6 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
@@ -25,7 +25,9 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
 
     private final JwtAuthFilter jwtAuthFilter;
-    private final UserDetailsService userDetailsService;
+    private final RateLimitFilter rateLimitFilter;
+    private final CustomUserDetailsService userDetailsService;
+    private final PasswordHasher passwordHasher;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -34,14 +36,18 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/api/v1/auth/**").permitAll() // Allow register/login
+                .requestMatchers("/actuator/health").permitAll() // Liveness/readiness probes
+                .requestMatchers("/actuator/**").hasRole("ADMIN") // Metrics: scraped with an admin token
                 .requestMatchers("/api/v1/file/search").hasAnyRole("USER", "ADMIN") // Specific match
                 .requestMatchers("/api/v1/file/admin/**").hasRole("ADMIN") // Admin endpoints
+                .requestMatchers("/api/v1/audit/**").hasRole("ADMIN") // Audit trail
                 .requestMatchers("/api/v1/file/**").hasRole("USER") // General user-only endpoints
                 .anyRequest().authenticated()
             )
             .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authenticationProvider(authenticationProvider())
             .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+            .addFilterAfter(rateLimitFilter, JwtAuthFilter.class) // Per-user limits, once the user is known
             .build();
     }
 
@@ -49,15 +55,12 @@ public class SecurityConfig {
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
         provider.setUserDetailsService(userDetailsService);
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordHasher);
+        // Rehashes on login when the stored hash is weaker than the current settings
+        provider.setUserDetailsPasswordService(userDetailsService);
         return provider;
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration config) throws Exception {
         return config.getAuthenticationManager();
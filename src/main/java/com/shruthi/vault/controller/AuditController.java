@@ -0,0 +1,43 @@
+package com.shruthi.vault.controller;
+
+import com.shruthi.vault.model.AuditAction;
+import com.shruthi.vault.model.AuditEvent;
+import com.shruthi.vault.repository.AuditEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/audit")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class AuditController {
+
+    private final AuditEventRepository auditEventRepository;
+
+    @Value("${file.list.max-page-size:1000}")
+    private int maxPageSize;
+
+    /**
+     * Audit events, newest first. Pass the smallest id of a page as {@code beforeId} to get the next one.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/events")
+    public ResponseEntity<List<AuditEvent>> events(
+            @RequestParam(name = "user", required = false) String username,
+            @RequestParam(name = "action", required = false) AuditAction action,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "beforeId", required = false) Long beforeId,
+            @RequestParam(name = "limit", defaultValue = "100") int limit
+    ) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        return ResponseEntity.ok(auditEventRepository.search(username, action, from, to, beforeId, pageSize));
+    }
+}
@@ -1,12 +1,17 @@
 package com.shruthi.vault.controller;
 
+import com.shruthi.vault.dto.RefreshRequest;
 import com.shruthi.vault.dto.RegisterRequest;
 import com.shruthi.vault.dto.LoginRequest;
 import com.shruthi.vault.dto.AuthResponse;
+import com.shruthi.vault.security.PasswordHashingBusyException;
 import com.shruthi.vault.service.AuthService;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -18,15 +23,45 @@ public class AuthController {
 
     @PostMapping("/register")
     public ResponseEntity<AuthResponse> register(@RequestBody RegisterRequest request) {
-        System.out.println("Register endpoint hit!");
-        AuthResponse response = authService.register(request);
-        return ResponseEntity.ok(response);
+        try {
+            AuthResponse response = authService.register(request);
+            return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            return busy();
+        }
     }
 
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@RequestBody LoginRequest request) {
-        System.out.println("Login endpoint hit!");
-        AuthResponse response = authService.login(request);
-        return ResponseEntity.ok(response);
+        try {
+            AuthResponse response = authService.login(request);
+            return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            return busy();
+        }
+    }
+
+    /**
+     * Trades a refresh token for a new access token and a new refresh token.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@RequestBody RefreshRequest request) {
+        try {
+            AuthResponse response = authService.refresh(request);
+            return ResponseEntity.ok(response);
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null);
+        }
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<String> logout(@RequestBody RefreshRequest request) {
+        authService.logout(request);
+        return ResponseEntity.ok("Logged out");
+    }
+
+    // Password hashing is saturated; the client should retry shortly
+    private static ResponseEntity<AuthResponse> busy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(null);
     }
 }
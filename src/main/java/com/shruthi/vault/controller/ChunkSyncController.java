@@ -0,0 +1,151 @@
+package com.shruthi.vault.controller;
+
+import com.shruthi.vault.audit.AuditLog;
+import com.shruthi.vault.dto.SyncManifestRequest;
+import com.shruthi.vault.dto.SyncManifestResponse;
+import com.shruthi.vault.metrics.TransferMetrics;
+import com.shruthi.vault.model.AuditAction;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.security.VaultPrincipal;
+import com.shruthi.vault.service.ChunkSyncService;
+import com.shruthi.vault.service.FileMetadataCache;
+import com.shruthi.vault.service.QuotaExceededException;
+import com.shruthi.vault.storage.ContentDefinedChunker;
+import com.shruthi.vault.storage.MissingChunksException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.Map;
+
+/**
+ * Chunk-level sync: {@code POST /manifest} with the file's chunk hashes answers which chunks
+ * to send, {@code PUT /chunks/{hash}} uploads one, and {@code POST /commit} with the same
+ * manifest creates the file (or its next version).
+ */
+@RestController
+@RequestMapping("/api/v1/file/sync")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class ChunkSyncController {
+
+    private final ChunkSyncService chunkSyncService;
+    private final ContentDefinedChunker chunker;
+    private final FileMetadataCache fileMetadataCache;
+    private final AuditLog auditLog;
+    private final TransferMetrics transferMetrics;
+
+    @Value("${file.sync.max-chunks:1000000}")
+    private int maxChunks;
+
+    /**
+     * Chunking parameters clients should use so their chunks match the server's.
+     */
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/params")
+    public ResponseEntity<Map<String, Object>> params() {
+        return ResponseEntity.ok(Map.of(
+                "algorithm", "gear-cdc",
+                "minSize", chunker.getMinSize(),
+                "averageSize", chunker.getAverageSize(),
+                "maxSize", chunker.getMaxSize(),
+                "maxChunkSize", chunkSyncService.getMaxChunkSize(),
+                "maxChunks", maxChunks));
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PostMapping("/manifest")
+    public ResponseEntity<?> checkManifest(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestBody SyncManifestRequest request
+    ) throws IOException {
+        ResponseEntity<String> invalid = validate(request);
+        if (invalid != null) return invalid;
+
+        try {
+            return ResponseEntity.ok(chunkSyncService.missing(principal.getId(), request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PutMapping("/chunks/{hash}")
+    public ResponseEntity<String> uploadChunk(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String hash,
+            HttpServletRequest request
+    ) throws IOException {
+        if (request.getContentLengthLong() > chunkSyncService.getMaxChunkSize()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("Chunk larger than " + chunkSyncService.getMaxChunkSize() + " bytes");
+        }
+
+        boolean stored;
+        try {
+            stored = chunkSyncService.putChunk(principal.getId(), hash, request.getInputStream(), request.getContentType());
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        transferMetrics.record(principal.getId(), TransferMetrics.Direction.IN, Math.max(0, request.getContentLengthLong()));
+
+        return stored
+                ? ResponseEntity.status(HttpStatus.CREATED).body("Chunk stored: " + hash)
+                : ResponseEntity.ok("Chunk already stored: " + hash);
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PostMapping("/commit")
+    public ResponseEntity<?> commit(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestBody SyncManifestRequest request
+    ) throws IOException {
+        ResponseEntity<String> invalid = validate(request);
+        if (invalid != null) return invalid;
+        if (request.getFilename() == null || request.getFilename().isBlank()) {
+            return ResponseEntity.badRequest().body("Filename is required");
+        }
+
+        FileRecord existing = fileMetadataCache.find(principal.getId(), request.getFilename());
+        if (existing != null && !request.isOverwrite()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use overwrite=true");
+        }
+
+        FileRecord record;
+        try {
+            record = chunkSyncService.commit(principal.getId(), request);
+        } catch (MissingChunksException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(SyncManifestResponse.builder()
+                    .totalChunks(request.getChunks().size())
+                    .missing(e.getMissing())
+                    .build());
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(e.getMessage());
+        } catch (FileAlreadyExistsException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use overwrite=true");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        auditLog.record(AuditAction.UPLOAD, record.getFilename(), "sync, " + request.getChunks().size() + " chunks");
+
+        return ResponseEntity.ok("File uploaded successfully: " + record.getFilename());
+    }
+
+    private ResponseEntity<String> validate(SyncManifestRequest request) {
+        if (request.getChunks() == null || request.getChunks().isEmpty()) {
+            return ResponseEntity.badRequest().body("Chunk list is required");
+        }
+        if (request.getChunks().size() > maxChunks) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("At most " + maxChunks + " chunks per file");
+        }
+        return null;
+    }
+}
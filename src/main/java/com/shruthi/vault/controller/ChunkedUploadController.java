@@ -0,0 +1,164 @@
+package com.shruthi.vault.controller;
+
+import com.shruthi.vault.audit.AuditLog;
+import com.shruthi.vault.dto.UploadInitRequest;
+import com.shruthi.vault.dto.UploadSessionResponse;
+import com.shruthi.vault.metrics.TransferMetrics;
+import com.shruthi.vault.model.AuditAction;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.UploadSession;
+import com.shruthi.vault.repository.UploadSessionRepository;
+import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.security.VaultPrincipal;
+import com.shruthi.vault.service.ChunkedUploadService;
+import com.shruthi.vault.service.FileMetadataCache;
+import com.shruthi.vault.service.QuotaExceededException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+
+@RestController
+@RequestMapping("/api/v1/file/upload/sessions")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final FileMetadataCache fileMetadataCache;
+    private final UserRepository userRepository;
+    private final AuditLog auditLog;
+    private final TransferMetrics transferMetrics;
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PostMapping
+    public ResponseEntity<?> initUpload(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestBody UploadInitRequest request
+    ) throws IOException {
+        if (request.getFilename() == null || request.getFilename().isBlank() || request.getTotalSize() < 0) {
+            return ResponseEntity.badRequest().body("Filename and a non-negative totalSize are required");
+        }
+
+        FileRecord existing = fileMetadataCache.find(principal.getId(), request.getFilename());
+        if (existing != null && !request.isOverwrite()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use overwrite=true");
+        }
+
+        int chunkSize = chunkedUploadService.resolveChunkSize(request.getChunkSize());
+        UploadSession session;
+        try {
+            session = chunkedUploadService.init(
+                    userRepository.getReferenceById(principal.getId()), request.getFilename(), request.getTotalSize(), chunkSize, request.isOverwrite());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(e.getMessage());
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.toResponse(session));
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PutMapping("/{sessionId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            @RequestParam(name = "offset", required = false) Long offset,
+            HttpServletRequest request
+    ) throws IOException {
+        UploadSession session = findOwnSession(principal, sessionId);
+        if (session == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload session not found");
+
+        if (index < 0 || index >= session.getTotalChunks()) {
+            return ResponseEntity.badRequest().body("Chunk index out of range: " + index);
+        }
+        if (offset != null && offset != session.offsetOf(index)) {
+            return ResponseEntity.badRequest().body("Chunk " + index + " starts at offset " + session.offsetOf(index));
+        }
+
+        long expected = session.lengthOf(index);
+        long written;
+        try {
+            written = chunkedUploadService.writeChunk(session, index, request.getInputStream());
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(e.getMessage());
+        }
+        transferMetrics.record(principal.getId(), TransferMetrics.Direction.IN, written);
+        if (written != expected) {
+            return ResponseEntity.badRequest().body("Chunk " + index + " expected " + expected + " bytes, got " + written);
+        }
+
+        return ResponseEntity.ok(chunkedUploadService.toResponse(session));
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getProgress(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String sessionId
+    ) {
+        UploadSession session = findOwnSession(principal, sessionId);
+        if (session == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        return ResponseEntity.ok(chunkedUploadService.toResponse(session));
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<?> commitUpload(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String sessionId,
+            @RequestParam(name = "contentType", required = false) String contentType
+    ) throws IOException {
+        UploadSession session = findOwnSession(principal, sessionId);
+        if (session == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload session not found");
+
+        if (!chunkedUploadService.isComplete(session)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(chunkedUploadService.toResponse(session));
+        }
+
+        FileRecord existing = fileMetadataCache.find(principal.getId(), session.getFilename());
+        if (existing != null && !session.isOverwrite()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use overwrite=true");
+        }
+
+        FileRecord record;
+        try {
+            record = chunkedUploadService.commit(session, contentType);
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(e.getMessage());
+        } catch (FileAlreadyExistsException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use overwrite=true");
+        }
+        auditLog.record(AuditAction.UPLOAD, record.getFilename(), existing != null ? "chunked, overwrite" : "chunked");
+        return ResponseEntity.ok("File uploaded successfully: " + record.getFilename());
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<String> abortUpload(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String sessionId
+    ) throws IOException {
+        UploadSession session = findOwnSession(principal, sessionId);
+        if (session == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Upload session not found");
+
+        chunkedUploadService.abort(session);
+        return ResponseEntity.ok("Upload aborted: " + session.getFilename());
+    }
+
+    private UploadSession findOwnSession(VaultPrincipal principal, String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+                .filter(s -> s.getOwner().getId().equals(principal.getId()))
+                .orElse(null);
+    }
+}
@@ -1,26 +1,57 @@
 package com.shruthi.vault.controller;
 
+import com.shruthi.vault.audit.AuditLog;
+import com.shruthi.vault.dto.BatchUploadResult;
+import com.shruthi.vault.dto.FileVersionSummary;
+import com.shruthi.vault.metrics.TransferMetrics;
+import com.shruthi.vault.model.AuditAction;
+import com.shruthi.vault.model.DeleteJob;
 import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.FileVersion;
 import com.shruthi.vault.model.Role;
 import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.DeleteJobRepository;
 import com.shruthi.vault.repository.FileRecordRepository;
 import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.search.FilenameIndex;
+import com.shruthi.vault.security.VaultPrincipal;
+import com.shruthi.vault.service.BatchUploadService;
+import com.shruthi.vault.service.BulkDeleteService;
+import com.shruthi.vault.service.FileDownloadService;
+import com.shruthi.vault.service.FileListingService;
+import com.shruthi.vault.service.FileMetadataCache;
+import com.shruthi.vault.service.FileNameLocks;
+import com.shruthi.vault.service.FileVersionService;
+import com.shruthi.vault.service.QuotaExceededException;
+import com.shruthi.vault.service.UsageService;
+import com.shruthi.vault.service.ZipDownloadService;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.file.FileAlreadyExistsException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 @RestController
 @RequestMapping("/api/v1/file")
@@ -30,101 +61,240 @@ public class FileController {
 
     private final FileRecordRepository fileRecordRepository;
     private final UserRepository userRepository;
-
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    private final StorageEngine storageEngine;
+    private final FileDownloadService fileDownloadService;
+    private final FileListingService fileListingService;
+    private final FilenameIndex filenameIndex;
+    private final BulkDeleteService bulkDeleteService;
+    private final DeleteJobRepository deleteJobRepository;
+    private final AuditLog auditLog;
+    private final TransferMetrics transferMetrics;
+    private final BatchUploadService batchUploadService;
+    private final ZipDownloadService zipDownloadService;
+    private final FileVersionService fileVersionService;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileNameLocks fileNameLocks;
+    private final UsageService usageService;
+
+    @Value("${file.list.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${file.upload.max-batch-files:100}")
+    private int maxBatchFiles;
 
     @PreAuthorize("hasAuthority('ROLE_USER')")
     @PostMapping("/upload")
     public ResponseEntity<String> uploadFile(
+            @AuthenticationPrincipal VaultPrincipal principal,
             @RequestParam("file") MultipartFile file,
             @RequestParam(name = "overwrite", defaultValue = "false") boolean overwrite
     ) throws IOException {
         if (file.isEmpty()) return ResponseEntity.badRequest().body("File is empty");
 
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).orElseThrow();
         String filename = file.getOriginalFilename();
 
-        FileRecord existing = fileRecordRepository.findTopByFilenameAndOwnerAndDeletedFalse(filename, user);
+        FileRecord existing = fileMetadataCache.find(principal.getId(), filename);
         if (existing != null && !overwrite) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use ?overwrite=true");
         }
 
-        if (existing != null && overwrite) {
-            Files.deleteIfExists(Paths.get(existing.getStoragePath()));
-            fileRecordRepository.delete(existing);
+        // The part is spooled already: held at its full size, it is refused before anything is stored
+        StoredBlob blob;
+        FileRecord record;
+        long credit = existing != null ? FileVersionService.sizeOf(existing.getSize()) : 0;
+        try (UsageService.Reservation reservation = usageService.reserve(principal.getId(), credit)) {
+            reservation.hold(file.getSize());
+            blob = storageEngine.store(file.getInputStream(), file.getContentType());
+            // Checked again under the file's lock: another upload of the name may have finished meanwhile
+            record = fileVersionService.publish(principal.getId(), filename, blob, file.getContentType(), overwrite);
+        } catch (QuotaExceededException e) {
+            return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(e.getMessage());
+        } catch (FileAlreadyExistsException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("File with same name exists. Use ?overwrite=true");
         }
+        transferMetrics.record(principal.getId(), TransferMetrics.Direction.IN, blob.size());
+        int version = FileVersionService.versionOf(record);
+        auditLog.record(AuditAction.UPLOAD, filename, version > 1 ? "overwrite, version " + version : null);
 
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) Files.createDirectories(uploadPath);
+        return ResponseEntity.ok("File uploaded successfully: " + filename);
+    }
 
-        Path filePath = uploadPath.resolve(filename);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @PostMapping("/upload/batch")
+    public ResponseEntity<?> uploadFiles(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(name = "overwrite", defaultValue = "false") boolean overwrite
+    ) throws IOException {
+        if (files.isEmpty()) return ResponseEntity.badRequest().body("No files");
+        if (files.size() > maxBatchFiles) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body("At most " + maxBatchFiles + " files per batch");
+        }
 
-        FileRecord record = FileRecord.builder()
-                .filename(filename)
-                .storagePath(filePath.toString())
-                .uploadTime(LocalDateTime.now())
-                .owner(user)
-                .deleted(false)
-                .build();
-        fileRecordRepository.save(record);
+        List<BatchUploadResult> results = batchUploadService.upload(principal.getId(), files, overwrite);
+        boolean anyStored = false;
+        for (BatchUploadResult result : results) {
+            if (!result.isStored()) continue;
+            anyStored = true;
+            transferMetrics.record(principal.getId(), TransferMetrics.Direction.IN, result.getSize());
+            auditLog.record(AuditAction.UPLOAD, result.getFilename(),
+                    result.getStatus() == BatchUploadResult.Status.OVERWRITTEN ? "batch, overwrite" : "batch");
+        }
 
-        return ResponseEntity.ok("File uploaded successfully: " + filename);
+        return ResponseEntity.status(anyStored ? HttpStatus.OK : HttpStatus.CONFLICT).body(results);
     }
 
     @PreAuthorize("hasAuthority('ROLE_USER')")
     @GetMapping("/list")
-    public ResponseEntity<List<String>> listUserFiles() {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).orElseThrow();
+    public ResponseEntity<List<String>> listUserFiles(@AuthenticationPrincipal VaultPrincipal principal) {
+        return ResponseEntity.ok(fileRecordRepository.findFilenamesByOwnerId(principal.getId()));
+    }
 
-        List<String> filenames = fileRecordRepository.findByOwnerAndDeletedFalse(user)
-                .stream()
-                .map(FileRecord::getFilename)
-                .toList();
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/list/page")
+    public ResponseEntity<StreamingResponseBody> listUserFilesPage(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "100") int size,
+            @RequestParam(name = "sort", defaultValue = "NEWEST") FileListingService.Sort sort
+    ) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        StreamingResponseBody body;
+        try {
+            body = fileListingService.page(principal.getId(), sort, cursor, pageSize);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
 
-        return ResponseEntity.ok(filenames);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @PreAuthorize("hasAuthority('ROLE_USER')")
     @GetMapping("/download/{filename}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) throws IOException {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).orElseThrow();
+    public void downloadFile(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        FileRecord record = fileMetadataCache.find(principal.getId(), filename);
+        if (record == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        if (fileDownloadService.serve(record, request, response)) {
+            auditLog.record(AuditAction.DOWNLOAD, filename, request.getHeader(HttpHeaders.RANGE));
+        }
+    }
+
+    /**
+     * Every kept version of the file, the current one first.
+     */
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/versions/{filename}")
+    public ResponseEntity<List<FileVersionSummary>> listVersions(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String filename
+    ) {
+        FileRecord record = fileMetadataCache.find(principal.getId(), filename);
+        if (record == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        List<FileVersionSummary> versions = new ArrayList<>();
+        versions.add(FileVersionSummary.builder()
+                .version(FileVersionService.versionOf(record))
+                .size(record.getSize())
+                .contentHash(record.getContentHash())
+                .uploadTime(record.getUploadTime())
+                .current(true)
+                .build());
+        for (FileVersion version : fileVersionService.history(record.getId())) {
+            versions.add(FileVersionSummary.builder()
+                    .version(version.getVersion())
+                    .size(version.getSize())
+                    .contentHash(version.getContentHash())
+                    .uploadTime(version.getUploadTime())
+                    .current(false)
+                    .build());
+        }
+        return ResponseEntity.ok(versions);
+    }
 
-        FileRecord record = fileRecordRepository.findTopByFilenameAndOwnerAndDeletedFalse(filename, user);
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/versions/{filename}/{version}")
+    public void downloadVersion(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String filename,
+            @PathVariable int version,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        FileRecord current = fileMetadataCache.find(principal.getId(), filename);
+        FileRecord record = current;
+        if (current != null && version != FileVersionService.versionOf(current)) {
+            record = fileVersionService.find(current.getId(), version)
+                    .map(old -> fileVersionService.asRecord(current, old))
+                    .orElse(null);
+        }
         if (record == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
 
-        Path path = Paths.get(record.getStoragePath());
-        Resource resource = new UrlResource(path.toUri());
-        if (!resource.exists() || !resource.isReadable()) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        if (fileDownloadService.serve(record, request, response)) {
+            auditLog.record(AuditAction.DOWNLOAD, filename, "version " + version);
         }
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .body(resource);
+    /**
+     * The named files, or all of the user's files if none are named, as one streamed ZIP.
+     */
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/archive")
+    public void downloadArchive(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestParam(name = "files", required = false) List<String> files,
+            HttpServletResponse response
+    ) throws IOException {
+        Set<String> wanted = files == null ? Set.of() : new LinkedHashSet<>(files);
+        Map<String, FileRecord> selected = new LinkedHashMap<>();
+        for (FileRecord record : fileRecordRepository.findByOwnerAndDeletedFalse(userRepository.getReferenceById(principal.getId()))) {
+            if (wanted.isEmpty() || wanted.contains(record.getFilename())) {
+                selected.putIfAbsent(record.getFilename(), record);
+            }
+        }
+        if (selected.isEmpty() || selected.size() < wanted.size()) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        auditLog.record(AuditAction.DOWNLOAD, wanted.isEmpty() ? "*" : String.join(", ", wanted), "zip, " + selected.size() + " files");
+        zipDownloadService.write(List.copyOf(selected.values()), principal.getId(), principal.getUsername() + "-files.zip", response);
     }
 
     @PreAuthorize("hasAnyAuthority('ROLE_USER', 'ROLE_ADMIN')")
     @GetMapping("/search")
-    public ResponseEntity<List<String>> searchFiles(@RequestParam String keyword) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).orElseThrow();
-
-        List<FileRecord> results;
-        if (user.getRole() == Role.ADMIN) {
-            results = fileRecordRepository.findByFilenameContainingIgnoreCaseAndDeletedFalse(keyword);
-        } else {
-            results = fileRecordRepository.findByOwnerAndFilenameContainingIgnoreCaseAndDeletedFalse(user, keyword);
+    public ResponseEntity<List<String>> searchFiles(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @RequestParam String keyword,
+            @RequestParam(name = "mode", defaultValue = "SUBSTRING") FilenameIndex.Mode mode,
+            @RequestParam(name = "offset", defaultValue = "0") int offset,
+            @RequestParam(name = "limit", defaultValue = "100") int limit
+    ) {
+        // Until the startup rebuild completes; the database can't answer with the same modes and paging
+        if (!filenameIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(null);
         }
 
-        List<String> filenames = results.stream()
-                .map(f -> String.format("User: %s | File: %s", f.getOwner().getUsername(), f.getFilename()))
+        boolean admin = principal.getRole() == Role.ADMIN;
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        auditLog.record(AuditAction.SEARCH, keyword, mode.name());
+
+        List<String> filenames = filenameIndex.search(keyword, mode, admin ? null : principal.getId(), Math.max(0, offset), pageSize)
+                .stream()
+                .map(f -> String.format("User: %s | File: %s", filenameIndex.ownerName(f.ownerId()), f.filename()))
                 .toList();
 
         return ResponseEntity.ok(filenames);
@@ -133,21 +303,18 @@ public class FileController {
     @PreAuthorize("hasAuthority('ROLE_USER')")
     @DeleteMapping("/delete/{filename}")
     public ResponseEntity<String> deleteOwnFile(
+            @AuthenticationPrincipal VaultPrincipal principal,
             @PathVariable String filename,
             @RequestParam(name = "confirm", defaultValue = "false") boolean confirm,
             @RequestParam(name = "hard", defaultValue = "false") boolean hard
     ) throws IOException {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).orElseThrow();
-
-        FileRecord record = fileRecordRepository.findTopByFilenameAndOwnerAndDeletedFalse(filename, user);
+        FileRecord record = fileMetadataCache.find(principal.getId(), filename);
         if (record == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File not found.");
 
         if (!confirm) return ResponseEntity.status(HttpStatus.CONFLICT).body("\u26a0\ufe0f Are you sure? Use ?confirm=true");
 
-        if (hard) Files.deleteIfExists(Paths.get(record.getStoragePath()));
-        record.setDeleted(true);
-        fileRecordRepository.save(record);
+        if (!delete(principal.getId(), filename, hard)) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File not found.");
+        auditLog.record(AuditAction.DELETE, filename, hard ? "hard" : "soft");
 
         return ResponseEntity.ok("\u2705 File deleted: " + filename);
     }
@@ -155,22 +322,33 @@ public class FileController {
     @PreAuthorize("hasAuthority('ROLE_USER')")
     @DeleteMapping("/delete-all")
     public ResponseEntity<String> deleteAllOwnFiles(
+            @AuthenticationPrincipal VaultPrincipal principal,
             @RequestParam(name = "confirm", defaultValue = "false") boolean confirm,
             @RequestParam(name = "hard", defaultValue = "false") boolean hard
-    ) throws IOException {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).orElseThrow();
-        List<FileRecord> files = fileRecordRepository.findByOwnerAndDeletedFalse(user);
-
+    ) {
         if (!confirm) return ResponseEntity.status(HttpStatus.CONFLICT).body("\u26a0\ufe0f Are you sure? Use ?confirm=true");
 
-        for (FileRecord record : files) {
-            if (hard) Files.deleteIfExists(Paths.get(record.getStoragePath()));
-            record.setDeleted(true);
-            fileRecordRepository.save(record);
+        auditLog.record(AuditAction.DELETE_ALL, principal.getUsername(), hard ? "hard" : "soft");
+        if (hard) {
+            DeleteJob job = bulkDeleteService.hardDeleteAll(principal.getId(), principal.getUsername());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body("\u2705 All files deleted for user: " + principal.getUsername() + " (cleanup job: " + job.getId() + ")");
         }
 
-        return ResponseEntity.ok("\u2705 All files deleted for user: " + username);
+        bulkDeleteService.softDeleteAll(principal.getId());
+        return ResponseEntity.ok("\u2705 All files deleted for user: " + principal.getUsername());
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_USER')")
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<DeleteJob> getOwnDeleteJob(
+            @AuthenticationPrincipal VaultPrincipal principal,
+            @PathVariable String jobId
+    ) {
+        return deleteJobRepository.findById(jobId)
+                .filter(job -> job.getOwnerId().equals(principal.getId()))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(null));
     }
 
     @PreAuthorize("hasAuthority('ROLE_ADMIN')")
@@ -182,14 +360,13 @@ public class FileController {
             @RequestParam(name = "hard", defaultValue = "false") boolean hard
     ) throws IOException {
         User user = userRepository.findByUsername(username).orElseThrow();
-        FileRecord record = fileRecordRepository.findTopByFilenameAndOwnerAndDeletedFalse(filename, user);
+        FileRecord record = fileMetadataCache.find(user.getId(), filename);
         if (record == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File not found");
 
         if (!confirm) return ResponseEntity.status(HttpStatus.CONFLICT).body("\u26a0\ufe0f Are you sure? Use ?confirm=true");
 
-        if (hard) Files.deleteIfExists(Paths.get(record.getStoragePath()));
-        record.setDeleted(true);
-        fileRecordRepository.save(record);
+        if (!delete(user.getId(), filename, hard)) return ResponseEntity.status(HttpStatus.NOT_FOUND).body("File not found");
+        auditLog.record(AuditAction.DELETE, username + "/" + filename, hard ? "hard" : "soft");
 
         return ResponseEntity.ok("\u2705 File deleted: " + filename + " for user: " + username);
     }
@@ -200,18 +377,61 @@ public class FileController {
             @PathVariable String username,
             @RequestParam(name = "confirm", defaultValue = "false") boolean confirm,
             @RequestParam(name = "hard", defaultValue = "false") boolean hard
-    ) throws IOException {
+    ) {
         User user = userRepository.findByUsername(username).orElseThrow();
-        List<FileRecord> files = fileRecordRepository.findByOwnerAndDeletedFalse(user);
 
         if (!confirm) return ResponseEntity.status(HttpStatus.CONFLICT).body("\u26a0\ufe0f Are you sure? Use ?confirm=true");
 
-        for (FileRecord record : files) {
-            if (hard) Files.deleteIfExists(Paths.get(record.getStoragePath()));
-            record.setDeleted(true);
-            fileRecordRepository.save(record);
+        auditLog.record(AuditAction.DELETE_ALL, username, hard ? "hard" : "soft");
+        if (hard) {
+            DeleteJob job = bulkDeleteService.hardDeleteAll(user.getId(), SecurityContextHolder.getContext().getAuthentication().getName());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body("\u2705 Deleted " + job.getTotal() + " files for user: " + username + " (cleanup job: " + job.getId() + ")");
         }
 
-        return ResponseEntity.ok("\u2705 Deleted " + files.size() + " files for user: " + username);
+        int deleted = bulkDeleteService.softDeleteAll(user.getId());
+        return ResponseEntity.ok("\u2705 Deleted " + deleted + " files for user: " + username);
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/admin/jobs/{jobId}")
+    public ResponseEntity<DeleteJob> getDeleteJob(@PathVariable String jobId) {
+        return deleteJobRepository.findById(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(null));
+    }
+
+    /**
+     * Soft-deletes the file, or removes the record and drops its references on the stored
+     * content; the bytes themselves only go away once nothing else points at the same blob.
+     * The record is read again under the file's lock: the one looked up (possibly cached) may
+     * predate an overwrite that was still in progress.
+     *
+     * @return false if the file no longer exists
+     */
+    private boolean delete(Long ownerId, String filename, boolean hard) throws IOException {
+        ReentrantLock lock = fileNameLocks.get(ownerId, filename);
+        lock.lock();
+        try {
+            FileRecord record = fileRecordRepository.findTopByFilenameAndOwnerIdAndDeletedFalse(filename, ownerId);
+            if (record == null) return false;
+            if (hard) {
+                fileRecordRepository.delete(record);
+            } else {
+                record.setDeleted(true);
+                record.setDeletedAt(LocalDateTime.now());
+                fileRecordRepository.save(record);
+            }
+            // Files in the trash aren't charged either
+            usageService.record(ownerId, -FileVersionService.sizeOf(record.getSize()), -1);
+            if (hard) {
+                storageEngine.release(record.getStoragePath());
+                fileVersionService.deleteAll(List.of(record.getId()));
+            }
+            return true;
+        } finally {
+            fileMetadataCache.invalidate(ownerId, filename);
+            lock.unlock();
+        }
     }
 }
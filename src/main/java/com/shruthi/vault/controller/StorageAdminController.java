@@ -0,0 +1,67 @@
+package com.shruthi.vault.controller;
+
+import com.shruthi.vault.dto.MigrationReport;
+import com.shruthi.vault.dto.SweepReport;
+import com.shruthi.vault.service.StorageMigrationService;
+import com.shruthi.vault.service.StorageSweeper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/admin/storage")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class StorageAdminController {
+
+    private final StorageSweeper storageSweeper;
+    private final StorageMigrationService storageMigrationService;
+
+    /**
+     * Report of the last finished storage sweep.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/sweep")
+    public ResponseEntity<SweepReport> lastSweep() {
+        return storageSweeper.getLastReport()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Starts a storage sweep now instead of waiting for the schedule.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PostMapping("/sweep")
+    public ResponseEntity<String> sweep() {
+        if (!storageSweeper.trigger()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A storage sweep is already running");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body("Storage sweep started");
+    }
+
+    /**
+     * Report of the last storage migration, while it runs and after.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/migration")
+    public ResponseEntity<MigrationReport> lastMigration() {
+        return storageMigrationService.getLastReport()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    /**
+     * Moves blobs into the configured shard layout and plain files into the blob store, online.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PostMapping("/migration")
+    public ResponseEntity<String> migrate() {
+        if (!storageMigrationService.trigger()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A storage migration is already running");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body("Storage migration started");
+    }
+}
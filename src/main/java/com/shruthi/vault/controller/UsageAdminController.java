@@ -0,0 +1,61 @@
+package com.shruthi.vault.controller;
+
+import com.shruthi.vault.dto.UsageReport;
+import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.service.UsageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/admin/usage")
+@CrossOrigin("*")
+@RequiredArgsConstructor
+public class UsageAdminController {
+
+    private final UserRepository userRepository;
+    private final UsageService usageService;
+
+    /**
+     * Storage used by the user and their quota, from the counters kept on the user.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @GetMapping("/{username}")
+    public ResponseEntity<UsageReport> usage(@PathVariable String username) {
+        return userRepository.findByUsername(username)
+                .map(user -> ResponseEntity.ok(usageService.report(user)))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).body(null));
+    }
+
+    /**
+     * Sets the user's quota in bytes (0 for no limit), or without {@code bytes} puts them back
+     * on the default.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PutMapping("/{username}/quota")
+    public ResponseEntity<UsageReport> setQuota(
+            @PathVariable String username,
+            @RequestParam(name = "bytes", required = false) Long bytes
+    ) {
+        if (bytes != null && bytes < 0) return ResponseEntity.badRequest().body(null);
+
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+
+        usageService.setQuota(user, bytes);
+        return ResponseEntity.ok(usageService.report(user));
+    }
+
+    /**
+     * Recomputes every user's usage from their files, repairing counts a crash left behind.
+     */
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @PostMapping("/recount")
+    public ResponseEntity<String> recount() {
+        usageService.recount();
+        return ResponseEntity.ok("Storage usage recounted");
+    }
+}
@@ -9,5 +9,6 @@ import lombok.*;
 
 public class AuthResponse {
 	private String token;
+    private String refreshToken;
 
 }
@@ -0,0 +1,22 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class BatchUploadResult {
+
+    public enum Status {UPLOADED, OVERWRITTEN, EXISTS, EMPTY, DUPLICATE, FAILED}
+
+    private String filename;
+    private Status status;
+    private Long size;
+    private String message;
+
+    public boolean isStored() {
+        return status == Status.UPLOADED || status == Status.OVERWRITTEN;
+    }
+}
@@ -0,0 +1,19 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class FileSummary {
+    private Long id;
+    private String filename;
+    private Long size;
+    private LocalDateTime uploadTime;
+    private String contentType;
+
+}
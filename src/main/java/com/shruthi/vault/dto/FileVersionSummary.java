@@ -0,0 +1,19 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class FileVersionSummary {
+    private int version;
+    private Long size;
+    private String contentHash;
+    private LocalDateTime uploadTime;
+    private boolean current;
+
+}
@@ -0,0 +1,22 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class MigrationReport {
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int relocatedBlobs;      // Blob files moved into the current shard layout
+    private int migratedRecords;     // Plain files moved into the blob store
+    private int migratedVersions;
+    private int skipped;             // Overwritten or deleted while being migrated
+    private int failed;              // Plain file missing or unreadable
+    private String error;
+
+}
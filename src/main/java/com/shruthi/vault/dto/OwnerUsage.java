@@ -0,0 +1,15 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class OwnerUsage {
+    private Long ownerId;
+    private Long bytes;
+    private Long files;
+
+}
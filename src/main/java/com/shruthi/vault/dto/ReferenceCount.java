@@ -0,0 +1,14 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class ReferenceCount {
+    private String storageKey;
+    private Long references;
+
+}
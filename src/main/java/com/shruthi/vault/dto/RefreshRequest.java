@@ -0,0 +1,13 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class RefreshRequest {
+    private String refreshToken;
+
+}
@@ -0,0 +1,29 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class SweepReport {
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int purgedRecords;       // Soft-deleted files past the retention window
+    private int expiredSessions;     // Chunked upload sessions never committed
+    private int expiredSyncChunks;   // Sync chunk uploads never committed
+    private int partialFiles;        // .partial files without a session
+    private int legacyFiles;         // Pre-blob-store files no record points at
+    private int unreferencedManifests;
+    private int unreferencedBlobs;
+    private int strayFiles;          // Blob files without a blob row
+    private int tempFiles;
+    private int correctedRefCounts;  // Blob and manifest reference counts that had drifted
+    private int danglingRecords;     // Records whose content is gone; reported, not removed
+    private long reclaimedBytes;
+    private String error;
+
+}
@@ -0,0 +1,18 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class SyncManifestRequest {
+    private String filename;
+    private String contentType;
+    private boolean overwrite;
+    private List<String> chunks;  // Hex SHA-256 of each content-defined chunk, in file order
+
+}
@@ -0,0 +1,16 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class SyncManifestResponse {
+    private int totalChunks;
+    private List<String> missing;  // Chunks to upload before committing, each listed once
+
+}
@@ -0,0 +1,16 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class UploadInitRequest {
+    private String filename;
+    private long totalSize;
+    private Integer chunkSize;  // Optional: server default is used if not provided
+    private boolean overwrite;
+
+}
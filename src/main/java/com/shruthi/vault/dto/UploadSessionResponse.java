@@ -0,0 +1,21 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class UploadSessionResponse {
+    private String sessionId;
+    private String filename;
+    private long totalSize;
+    private int chunkSize;
+    private int totalChunks;
+    private long receivedBytes;
+    private List<Integer> receivedChunks;
+
+}
@@ -0,0 +1,17 @@
+package com.shruthi.vault.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+
+public class UsageReport {
+    private String username;
+    private long usedBytes;
+    private long fileCount;
+    private long quotaBytes;        // 0 when unlimited
+    private boolean defaultQuota;   // No quota of the user's own; the configured default applies
+
+}
@@ -0,0 +1,111 @@
+package com.shruthi.vault.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes moved through the API, in total ({@code vault.transfer.bytes}, per direction) and per
+ * user. Per-user rates are published as {@code vault.user.throughput} gauges (bytes/second over
+ * the last interval), only for the busiest users so the number of series stays bounded; users
+ * are tagged by id, not name.
+ */
+@Component
+public class TransferMetrics {
+
+    public enum Direction {IN, OUT}
+
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final DistributionSummary uploadSize;
+    private final DistributionSummary downloadSize;
+    private final MultiGauge userThroughput;
+    private final int topUsers;
+
+    private final Map<Long, UserTotals> users = new ConcurrentHashMap<>();
+    private long lastPublished = System.nanoTime();
+
+    public TransferMetrics(MeterRegistry registry, @Value("${metrics.user-throughput.top-users:20}") int topUsers) {
+        this.bytesIn = Counter.builder("vault.transfer.bytes").tag("direction", "in").baseUnit("bytes")
+                .description("Content bytes received in uploads").register(registry);
+        this.bytesOut = Counter.builder("vault.transfer.bytes").tag("direction", "out").baseUnit("bytes")
+                .description("Content bytes sent in downloads").register(registry);
+        this.uploadSize = DistributionSummary.builder("vault.upload.size").baseUnit("bytes")
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+        this.downloadSize = DistributionSummary.builder("vault.download.size").baseUnit("bytes")
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+        this.userThroughput = MultiGauge.builder("vault.user.throughput").baseUnit("bytes")
+                .description("Per-user bytes/second over the last publish interval").register(registry);
+        this.topUsers = topUsers;
+    }
+
+    /**
+     * Counts a complete upload or download (or one chunk of a chunked upload).
+     */
+    public void record(Long userId, Direction direction, long bytes) {
+        if (bytes <= 0) return;
+        if (direction == Direction.IN) {
+            bytesIn.increment(bytes);
+            uploadSize.record(bytes);
+        } else {
+            bytesOut.increment(bytes);
+            downloadSize.record(bytes);
+        }
+        if (userId != null) {
+            UserTotals totals = users.computeIfAbsent(userId, id -> new UserTotals());
+            (direction == Direction.IN ? totals.in : totals.out).add(bytes);
+        }
+    }
+
+    /**
+     * Turns the bytes counted since the last run into rates and republishes the gauges. Users
+     * with no traffic in the interval drop out.
+     */
+    @Scheduled(fixedRateString = "${metrics.user-throughput.interval:60000}")
+    public synchronized void publish() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-3, (now - lastPublished) / 1e9);
+        lastPublished = now;
+
+        List<UserRate> rates = new ArrayList<>();
+        users.forEach((userId, totals) -> {
+            long in = totals.in.sumThenReset();
+            long out = totals.out.sumThenReset();
+            if (in == 0 && out == 0) {
+                users.remove(userId, totals);
+            } else {
+                rates.add(new UserRate(userId, in / seconds, out / seconds));
+            }
+        });
+
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        rates.stream()
+                .sorted(Comparator.comparingDouble((UserRate r) -> r.in + r.out).reversed())
+                .limit(topUsers)
+                .forEach(r -> {
+                    rows.add(MultiGauge.Row.of(Tags.of("user", r.userId.toString(), "direction", "in"), r.in));
+                    rows.add(MultiGauge.Row.of(Tags.of("user", r.userId.toString(), "direction", "out"), r.out));
+                });
+        userThroughput.register(rows, true);
+    }
+
+    private static final class UserTotals {
+        final LongAdder in = new LongAdder();
+        final LongAdder out = new LongAdder();
+    }
+
+    private record UserRate(Long userId, double in, double out) {
+    }
+}
@@ -0,0 +1,13 @@
+package com.shruthi.vault.model;
+
+public enum AuditAction {
+    REGISTER,
+    LOGIN,
+    LOGIN_FAILED,
+    TOKEN_REFRESH,
+    UPLOAD,
+    DOWNLOAD,
+    SEARCH,
+    DELETE,
+    DELETE_ALL
+}
@@ -0,0 +1,46 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the audit trail. Rows are written in batches by {@code AuditLog}'s background
+ * writer; this mapping is used for reading them back and for the schema.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "audit_events",
+indexes = {
+        @Index(name = "idx_audit_events_username", columnList = "username, id"),
+        @Index(name = "idx_audit_events_action", columnList = "action, id"),
+        @Index(name = "idx_audit_events_time", columnList = "occurred_at")
+    })
+public class AuditEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private LocalDateTime occurredAt;
+
+    // Null for events without an authenticated user (failed logins)
+    private Long userId;
+
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    private AuditAction action;
+
+    // What the action was applied to: a filename, a search keyword, another user
+    private String target;
+
+    private String detail;
+
+    @Column(length = 64)
+    private String clientIp;
+}
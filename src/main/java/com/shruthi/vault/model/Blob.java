@@ -0,0 +1,61 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "blobs")
+public class Blob implements Persistable<String> {
+
+    // Hex-encoded SHA-256 of the content
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    private long size;
+
+    // Number of FileRecords (live or soft-deleted) that point at this blob
+    private long refCount;
+
+    // Data key wrapped with the master key; null for blobs written before encryption at rest
+    @Column(length = 64)
+    private String wrappedKey;
+
+    // Content coding of the stored bytes ("gzip"), or null if stored as is
+    @Column(length = 16)
+    private String encoding;
+
+    // Bytes on disk, after compression and encryption; size is the original content length
+    private Long storedSize;
+
+    private LocalDateTime createdAt;
+
+    // The hash is assigned, so without this save() would merge over a row another node inserted
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private boolean unsaved;
+
+    @Override
+    public String getId() {
+        return hash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return unsaved;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markSaved() {
+        unsaved = false;
+    }
+}
@@ -0,0 +1,61 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "chunk_manifests")
+public class ChunkManifest implements Persistable<String> {
+
+    // Hex-encoded SHA-256 of the whole content
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    private long size;
+
+    private int chunkCount;
+
+    // Number of FileRecords / FileVersions that point at this content; the manifest itself
+    // holds one reference on each of its chunk blobs
+    private long refCount;
+
+    // Per chunk, in order: 32-byte SHA-256 followed by a 4-byte length
+    @Lob
+    @Column(length = 16 * 1024 * 1024)
+    private byte[] chunks;
+
+    // Bytes the chunks take on disk, counting shared chunks in full
+    private long storedSize;
+
+    private LocalDateTime createdAt;
+
+    // Assigned id, as for Blob: a new manifest must be inserted, not merged over another node's row
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private boolean unsaved;
+
+    @Override
+    public String getId() {
+        return hash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return unsaved;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markSaved() {
+        unsaved = false;
+    }
+}
@@ -0,0 +1,42 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "delete_jobs")
+public class DeleteJob {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    @Id
+    private String id;
+
+    private Long ownerId;
+
+    private String requestedBy;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    // Files marked for physical removal when the job was created
+    private long total;
+
+    private long processed;
+
+    private String error;
+
+    // Failed runs so far; a failed job is retried with backoff until file.delete.max-attempts
+    private int attempts;
+
+    private LocalDateTime nextAttemptAt;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime finishedAt;
+}
@@ -1,5 +1,6 @@
 package com.shruthi.vault.model;
 
+import com.shruthi.vault.search.FilenameIndexListener;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -12,8 +13,11 @@ import java.time.LocalDateTime;
 @Table(name = "file_records",
 uniqueConstraints = {
         @UniqueConstraint(columnNames = {"filename", "owner_id"})
+    },
+indexes = {
+        @Index(name = "idx_file_records_owner_time", columnList = "owner_id, deleted, upload_time, id")
     })
-
+@EntityListeners(FilenameIndexListener.class)
 public class FileRecord {
 
     @Id
@@ -22,14 +26,39 @@ public class FileRecord {
 
     private String filename;
 
+    // Storage key handed out by the StorageEngine (content-addressed blob key)
     private String storagePath;
 
+    private Long size;
+
+    // Hex SHA-256 of the content
+    @Column(length = 64)
+    private String contentHash;
+
+    private String contentType;
+
+    // How the blob is stored ("gzip" or null) and its size on disk; size above stays the original length
+    @Column(length = 16)
+    private String encoding;
+
+    private Long storedSize;
+
     private LocalDateTime uploadTime;
 
-    @ManyToOne
+    // Version number of the current content (older ones are FileVersions); null means 1
+    private Integer version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     private User owner;
     
     @Column(nullable = false)
     private boolean deleted = false;
+
+    // When it was soft-deleted; the storage sweeper purges it once the retention window has passed
+    private LocalDateTime deletedAt;
+
+    // Soft-deleted and waiting for a bulk delete job to remove the row and release the content
+    @Column(nullable = false)
+    private boolean purgePending;
 }
@@ -0,0 +1,51 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Content a file had before it was overwritten. Holds its own reference on that content.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "file_versions",
+indexes = {
+        @Index(name = "idx_file_versions_record", columnList = "file_record_id, version"),
+        @Index(name = "idx_file_versions_replaced", columnList = "replaced_at")
+    })
+public class FileVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_record_id", nullable = false)
+    private Long fileRecordId;
+
+    @Column(nullable = false)
+    private int version;
+
+    private String storagePath;
+
+    private Long size;
+
+    @Column(length = 64)
+    private String contentHash;
+
+    private String contentType;
+
+    @Column(length = 16)
+    private String encoding;
+
+    private Long storedSize;
+
+    // When this content was uploaded, and when a newer version replaced it
+    private LocalDateTime uploadTime;
+
+    @Column(name = "replaced_at")
+    private LocalDateTime replacedAt;
+}
@@ -0,0 +1,38 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A chunk a user uploaded through chunk sync and hasn't committed into a file yet: proof they
+ * hold its content, which is what lets their commit use it.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "sync_chunks",
+uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"owner_id", "hash"})
+    })
+
+public class SyncChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(nullable = false, length = 64)
+    private String hash;
+
+    private long size;
+
+    @Column(name = "uploaded_at", nullable = false)
+    private LocalDateTime uploadedAt;
+}
@@ -0,0 +1,55 @@
+package com.shruthi.vault.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "upload_sessions")
+public class UploadSession {
+
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String filename;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id")
+    private User owner;
+
+    private long totalSize;
+
+    private int chunkSize;
+
+    private boolean overwrite;
+
+    // Partially written file; chunks are written straight into it at their offsets
+    private String partPath;
+
+    private LocalDateTime createdAt;
+
+    // Last chunk received; sessions are expired by it, not by their age
+    private LocalDateTime lastActivityAt;
+
+    public int getTotalChunks() {
+        return Math.toIntExact(chunksFor(totalSize, chunkSize));
+    }
+
+    public static long chunksFor(long totalSize, int chunkSize) {
+        if (totalSize == 0) return 1;
+        return (totalSize - 1) / chunkSize + 1;
+    }
+
+    public long offsetOf(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public long lengthOf(int index) {
+        return Math.min(chunkSize, totalSize - offsetOf(index));
+    }
+}
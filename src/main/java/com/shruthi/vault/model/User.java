@@ -1,5 +1,6 @@
 package com.shruthi.vault.model;
 
+import com.shruthi.vault.security.UserCacheEvictionListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.security.core.GrantedAuthority;
@@ -15,6 +16,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Table(name = "users")
+@EntityListeners(UserCacheEvictionListener.class)
 public class User implements UserDetails {
 
     @Id
@@ -30,6 +32,14 @@ public class User implements UserDetails {
     @Enumerated(EnumType.STRING)
     private Role role;
 
+    // Storage charged to the user: current content of live files (not old versions or trash).
+    // Maintained by UsageService; null until first counted.
+    private Long usedBytes;
+    private Long fileCount;
+
+    // Null for the configured default; 0 for no limit
+    private Long quotaBytes;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
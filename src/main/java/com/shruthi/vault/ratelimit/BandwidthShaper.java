@@ -0,0 +1,53 @@
+package com.shruthi.vault.ratelimit;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds one user's transfers in one direction to their bytes/second. Streams report bytes after
+ * moving them and wait off any excess before moving more, so every concurrent upload (or
+ * download) of the user draws on the same budget.
+ */
+public final class BandwidthShaper {
+
+    private final TokenBucket bucket;
+    private final Timer held;
+    private final ScheduledExecutorService timer;
+
+    BandwidthShaper(TokenBucket bucket, Timer held, ScheduledExecutorService timer) {
+        this.bucket = bucket;
+        this.held = held;
+        this.timer = timer;
+    }
+
+    /**
+     * Counts bytes just moved, blocking the calling thread as long as they take the user over rate.
+     */
+    public void pace(long bytes) throws InterruptedIOException {
+        long wait = bucket.reserve(bytes);
+        if (wait <= 0) return;
+        held.record(wait, TimeUnit.NANOSECONDS);
+        long deadline = System.nanoTime() + wait;
+        for (long left = wait; left > 0; left = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(left);
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Interrupted while throttled");
+        }
+    }
+
+    /**
+     * Counts bytes just moved without blocking, for writers driven by callbacks.
+     *
+     * @return true if they take the user over rate; {@code resume} then runs once the excess is paid off
+     */
+    public boolean defer(long bytes, Runnable resume) {
+        long wait = bucket.reserve(bytes);
+        if (wait <= 0) return false;
+        held.record(wait, TimeUnit.NANOSECONDS);
+        timer.schedule(resume, wait, TimeUnit.NANOSECONDS);
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.shruthi.vault.ratelimit;
+
+import com.shruthi.vault.security.VaultPrincipal;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the authenticated user's limits: requests over their rate are refused with 429 and a
+ * Retry-After, and request and response bodies are shaped to their bandwidth. Runs right after
+ * {@link com.shruthi.vault.security.JwtAuthFilter}; anonymous requests pass through.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    // The user's download shaper, for writes that bypass the response (sendfile, non-blocking I/O)
+    public static final String DOWNLOAD_SHAPER = RateLimitFilter.class.getName() + ".downloadShaper";
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!rateLimiter.isEnabled() || authentication == null
+                || !(authentication.getPrincipal() instanceof VaultPrincipal principal)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        RateLimiter.UserLimits limits = rateLimiter.limits(principal);
+        if (limits.requests() != null) {
+            long wait = limits.requests().tryAcquire(1);
+            if (wait > 0) {
+                rateLimiter.rejected(principal.getRole());
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999))));
+                response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+                response.getWriter().write("Too many requests, retry later");
+                return;
+            }
+        }
+
+        if (limits.upload() != null) {
+            request = new ShapedRequest(request, limits.upload());
+        }
+        if (limits.download() != null) {
+            request.setAttribute(DOWNLOAD_SHAPER, limits.download());
+            response = new ShapedResponse(response, limits.download());
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,116 @@
+package com.shruthi.vault.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shruthi.vault.model.Role;
+import com.shruthi.vault.security.VaultPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Per-user request rate and upload/download bandwidth, from the tier of the user's role. Each
+ * user gets their own buckets, created on first use and dropped after {@code idle-expiry}
+ * without requests (by then they have refilled, so nothing is forgiven). A limit of 0 disables
+ * it. Limits are per node.
+ */
+@Component
+public class RateLimiter {
+
+    @Getter
+    private final boolean enabled;
+    private final Map<Role, Tier> tiers = new EnumMap<>(Role.class);
+    private final Map<Role, Counter> rejected = new EnumMap<>(Role.class);
+    private final Timer heldIn;
+    private final Timer heldOut;
+    private final Cache<Long, UserLimits> users;
+    // Wakes up non-blocking downloads a shaper has paused
+    private final ScheduledExecutorService timer;
+
+    public RateLimiter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                       @Value("${rate-limit.idle-expiry:10m}") Duration idleExpiry,
+                       @Value("${rate-limit.user.requests-per-second:20}") double userRequests,
+                       @Value("${rate-limit.user.request-burst:40}") long userRequestBurst,
+                       @Value("${rate-limit.user.upload-bandwidth:20MB}") DataSize userUpload,
+                       @Value("${rate-limit.user.download-bandwidth:50MB}") DataSize userDownload,
+                       @Value("${rate-limit.user.bandwidth-burst:8MB}") DataSize userBandwidthBurst,
+                       @Value("${rate-limit.admin.requests-per-second:100}") double adminRequests,
+                       @Value("${rate-limit.admin.request-burst:200}") long adminRequestBurst,
+                       @Value("${rate-limit.admin.upload-bandwidth:0}") DataSize adminUpload,
+                       @Value("${rate-limit.admin.download-bandwidth:0}") DataSize adminDownload,
+                       @Value("${rate-limit.admin.bandwidth-burst:8MB}") DataSize adminBandwidthBurst,
+                       MeterRegistry registry) {
+        this.enabled = enabled;
+        tiers.put(Role.USER, new Tier(userRequests, userRequestBurst,
+                userUpload.toBytes(), userDownload.toBytes(), userBandwidthBurst.toBytes()));
+        tiers.put(Role.ADMIN, new Tier(adminRequests, adminRequestBurst,
+                adminUpload.toBytes(), adminDownload.toBytes(), adminBandwidthBurst.toBytes()));
+        for (Role role : Role.values()) {
+            rejected.put(role, Counter.builder("vault.ratelimit.rejected").tag("role", role.name())
+                    .description("Requests refused with 429 for exceeding the request rate").register(registry));
+        }
+        this.heldIn = Timer.builder("vault.ratelimit.held").tag("direction", "in")
+                .description("Time transfers were slowed down to the user's bandwidth").register(registry);
+        this.heldOut = Timer.builder("vault.ratelimit.held").tag("direction", "out")
+                .description("Time transfers were slowed down to the user's bandwidth").register(registry);
+        this.users = Caffeine.newBuilder().maximumSize(100_000).expireAfterAccess(idleExpiry).build();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The user's limits, created with their current role's tier (and replaced if the role changed).
+     */
+    public UserLimits limits(VaultPrincipal principal) {
+        UserLimits limits = users.get(principal.getId(), id -> create(principal.getRole()));
+        if (limits.role() != principal.getRole()) {
+            limits = create(principal.getRole());
+            users.put(principal.getId(), limits);
+        }
+        return limits;
+    }
+
+    void rejected(Role role) {
+        rejected.get(role).increment();
+    }
+
+    private UserLimits create(Role role) {
+        Tier tier = tiers.get(role);
+        return new UserLimits(role,
+                tier.requestsPerSecond() > 0 ? new TokenBucket(tier.requestsPerSecond(), tier.requestBurst()) : null,
+                shaper(tier.upload(), tier.bandwidthBurst(), heldIn),
+                shaper(tier.download(), tier.bandwidthBurst(), heldOut));
+    }
+
+    private BandwidthShaper shaper(long bytesPerSecond, long burst, Timer held) {
+        return bytesPerSecond > 0 ? new BandwidthShaper(new TokenBucket(bytesPerSecond, burst), held, timer) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private record Tier(double requestsPerSecond, long requestBurst, long upload, long download, long bandwidthBurst) {
+    }
+
+    /**
+     * One user's buckets; null where the tier sets no limit.
+     */
+    public record UserLimits(Role role, TokenBucket requests, BandwidthShaper upload, BandwidthShaper download) {
+    }
+}
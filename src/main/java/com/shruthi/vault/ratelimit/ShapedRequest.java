@@ -0,0 +1,166 @@
+package com.shruthi.vault.ratelimit;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.Part;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Request whose body reads at the user's upload rate. Raw bodies (chunked uploads and sync
+ * chunks) are shaped as they come off the socket. Multipart parts are spooled by the container
+ * before the application sees them, so their content is shaped as it is read into storage.
+ */
+final class ShapedRequest extends HttpServletRequestWrapper {
+
+    private final BandwidthShaper shaper;
+    private ServletInputStream in;
+
+    ShapedRequest(HttpServletRequest request, BandwidthShaper shaper) {
+        super(request);
+        this.shaper = shaper;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (in == null) in = new ShapedInputStream(super.getInputStream());
+        return in;
+    }
+
+    @Override
+    public Collection<Part> getParts() throws IOException, ServletException {
+        List<Part> parts = new ArrayList<>();
+        for (Part part : super.getParts()) parts.add(new ShapedPart(part));
+        return parts;
+    }
+
+    @Override
+    public Part getPart(String name) throws IOException, ServletException {
+        Part part = super.getPart(name);
+        return part == null ? null : new ShapedPart(part);
+    }
+
+    private final class ShapedInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+
+        ShapedInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) shaper.pace(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int off, int len) throws IOException {
+            int n = delegate.read(buffer, off, len);
+            if (n > 0) shaper.pace(n);
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+            delegate.setReadListener(listener);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private final class ShapedPart implements Part {
+
+        private final Part delegate;
+
+        ShapedPart(Part delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(delegate.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) shaper.pace(1);
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    int n = super.read(buffer, off, len);
+                    if (n > 0) shaper.pace(n);
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public String getContentType() {
+            return delegate.getContentType();
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public String getSubmittedFileName() {
+            return delegate.getSubmittedFileName();
+        }
+
+        @Override
+        public long getSize() {
+            return delegate.getSize();
+        }
+
+        @Override
+        public void write(String fileName) throws IOException {
+            delegate.write(fileName);
+        }
+
+        @Override
+        public void delete() throws IOException {
+            delegate.delete();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return delegate.getHeader(name);
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name) {
+            return delegate.getHeaders(name);
+        }
+
+        @Override
+        public Collection<String> getHeaderNames() {
+            return delegate.getHeaderNames();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.shruthi.vault.ratelimit;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * Response whose body is written at the user's download rate. Only covers blocking writes:
+ * sendfile and non-blocking downloads bypass the response object, so the download service
+ * shapes those itself (see {@link RateLimitFilter#DOWNLOAD_SHAPER}).
+ */
+final class ShapedResponse extends HttpServletResponseWrapper {
+
+    private final BandwidthShaper shaper;
+    private ServletOutputStream out;
+
+    ShapedResponse(HttpServletResponse response, BandwidthShaper shaper) {
+        super(response);
+        this.shaper = shaper;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (out == null) out = new ShapedOutputStream(super.getOutputStream());
+        return out;
+    }
+
+    private final class ShapedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        ShapedOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            shaper.pace(1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int off, int len) throws IOException {
+            delegate.write(buffer, off, len);
+            shaper.pace(len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            delegate.setWriteListener(listener);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.shruthi.vault.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single timestamp: the moment the bucket will be full again (the
+ * generic cell rate algorithm). Tokens refill at a steady rate up to {@code burst}; taking some
+ * moves the timestamp forward in one compare-and-set, so callers never lock and nothing has to
+ * refill buckets in the background.
+ */
+public final class TokenBucket {
+
+    private final double nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+    public TokenBucket(double tokensPerSecond, long burst) {
+        this.nanosPerToken = 1e9 / tokensPerSecond;
+        this.burstNanos = (long) (nanosPerToken * Math.max(1, burst));
+    }
+
+    /**
+     * Takes {@code tokens} if the bucket holds that many.
+     *
+     * @return 0 if they were taken, otherwise nanoseconds until they would be
+     */
+    public long tryAcquire(long tokens) {
+        long cost = (long) (tokens * nanosPerToken);
+        while (true) {
+            long full = fullAt.get();
+            long now = System.nanoTime();
+            long next = Math.max(full, now) + cost;
+            long wait = next - now - burstNanos;
+            if (wait > 0) return wait;
+            if (fullAt.compareAndSet(full, next)) return 0;
+        }
+    }
+
+    /**
+     * Takes {@code tokens} whether or not the bucket holds them, going into debt when it doesn't.
+     *
+     * @return nanoseconds the caller should wait to stay within the rate (0 for none)
+     */
+    public long reserve(long tokens) {
+        long cost = (long) (tokens * nanosPerToken);
+        while (true) {
+            long full = fullAt.get();
+            long now = System.nanoTime();
+            long next = Math.max(full, now) + cost;
+            if (fullAt.compareAndSet(full, next)) return Math.max(0, next - now - burstNanos);
+        }
+    }
+}
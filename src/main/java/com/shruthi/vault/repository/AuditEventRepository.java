@@ -0,0 +1,34 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.AuditAction;
+import com.shruthi.vault.model.AuditEvent;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public interface AuditEventRepository extends JpaRepository<AuditEvent, Long>, JpaSpecificationExecutor<AuditEvent> {
+
+    /**
+     * Newest events first, with only the given filters applied (null means any). Pages continue
+     * from the last id seen ({@code beforeId}) rather than an offset.
+     */
+    default List<AuditEvent> search(String username, AuditAction action, LocalDateTime from, LocalDateTime to,
+                                    Long beforeId, int limit) {
+        Specification<AuditEvent> filters = (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (username != null) predicates.add(cb.equal(root.get("username"), username));
+            if (action != null) predicates.add(cb.equal(root.get("action"), action));
+            if (from != null) predicates.add(cb.greaterThanOrEqualTo(root.get("occurredAt"), from));
+            if (to != null) predicates.add(cb.lessThan(root.get("occurredAt"), to));
+            if (beforeId != null) predicates.add(cb.lessThan(root.get("id"), beforeId));
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+        return findBy(filters, q -> q.sortBy(Sort.by(Sort.Direction.DESC, "id")).limit(limit).all());
+    }
+}
@@ -0,0 +1,59 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.Blob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount + 1 where b.hash = :hash")
+    int incrementRefCount(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount - 1 where b.hash = :hash and b.refCount > 0")
+    int decrementRefCount(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Blob b where b.hash = :hash and b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    // Set-based variants for chunk sync, one statement per batch of hashes
+
+    @Query("select b.hash from Blob b where b.hash in :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount + :count where b.hash in :hashes")
+    int incrementRefCounts(@Param("hashes") Collection<String> hashes, @Param("count") long count);
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = b.refCount - :count where b.hash in :hashes and b.refCount >= :count")
+    int decrementRefCounts(@Param("hashes") Collection<String> hashes, @Param("count") long count);
+
+    // Reference count reconciliation: one hash range at a time, counts set only if unchanged since read
+
+    List<Blob> findByHashGreaterThanAndHashLessThanOrderByHashAsc(String afterHash, String beforeHash, Pageable limit);
+
+    @Transactional
+    @Modifying
+    @Query("update Blob b set b.refCount = :refCount where b.hash = :hash and b.refCount = :observed")
+    int correctRefCount(@Param("hash") String hash, @Param("observed") long observed, @Param("refCount") long refCount);
+
+    @Query("select b.hash from Blob b where b.refCount <= 0 and (b.createdAt is null or b.createdAt < :cutoff)"
+            + " and b.hash > :afterHash order by b.hash")
+    List<String> findUnreferencedHashes(@Param("afterHash") String afterHash, @Param("cutoff") LocalDateTime cutoff, Pageable limit);
+}
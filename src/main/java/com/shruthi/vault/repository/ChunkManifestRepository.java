@@ -0,0 +1,46 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.ChunkManifest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ChunkManifestRepository extends JpaRepository<ChunkManifest, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update ChunkManifest m set m.refCount = m.refCount + 1 where m.hash = :hash")
+    int incrementRefCount(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying
+    @Query("update ChunkManifest m set m.refCount = m.refCount - 1 where m.hash = :hash and m.refCount > 0")
+    int decrementRefCount(@Param("hash") String hash);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ChunkManifest m where m.hash = :hash and m.refCount <= 0")
+    int deleteIfUnreferenced(@Param("hash") String hash);
+
+    @Query("select m.hash from ChunkManifest m where m.hash in :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+
+    // Reference count reconciliation
+    List<ChunkManifest> findByHashGreaterThanOrderByHashAsc(String afterHash, Pageable limit);
+
+    @Transactional
+    @Modifying
+    @Query("update ChunkManifest m set m.refCount = :refCount where m.hash = :hash and m.refCount = :observed")
+    int correctRefCount(@Param("hash") String hash, @Param("observed") long observed, @Param("refCount") long refCount);
+
+    @Query("select m.hash from ChunkManifest m where m.refCount <= 0 and m.createdAt < :cutoff"
+            + " and m.hash > :afterHash order by m.hash")
+    List<String> findUnreferencedHashes(@Param("afterHash") String afterHash, @Param("cutoff") LocalDateTime cutoff, Pageable limit);
+}
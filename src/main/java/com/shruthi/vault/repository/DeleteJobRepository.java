@@ -0,0 +1,14 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.DeleteJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DeleteJobRepository extends JpaRepository<DeleteJob, String> {
+
+    List<DeleteJob> findByStatusIn(Collection<DeleteJob.Status> statuses);
+
+    List<DeleteJob> findByStatusAndAttemptsLessThan(DeleteJob.Status status, int attempts);
+}
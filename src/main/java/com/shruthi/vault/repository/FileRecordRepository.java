@@ -1,10 +1,22 @@
 package com.shruthi.vault.repository;
 
+import com.shruthi.vault.dto.FileSummary;
+import com.shruthi.vault.dto.OwnerUsage;
+import com.shruthi.vault.dto.ReferenceCount;
 import com.shruthi.vault.model.FileRecord;
 import com.shruthi.vault.model.User;
+import com.shruthi.vault.search.IndexedFile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
 
@@ -19,4 +31,123 @@ public interface FileRecordRepository extends JpaRepository<FileRecord, Long> {
     List<FileRecord> findByFilenameContainingIgnoreCaseAndDeletedFalse(String keyword);
 
     List<FileRecord> findByOwnerAndFilenameContainingIgnoreCaseAndDeletedFalse(User user, String keyword);
+
+    // Owner-id variants: filter on the owner_id column directly, no User row needed
+
+    List<FileRecord> findByOwnerIdAndDeletedFalse(Long ownerId);
+
+    FileRecord findTopByFilenameAndOwnerIdAndDeletedFalse(String filename, Long ownerId);
+
+    FileRecord findTopByFilenameAndOwnerIdAndDeletedTrue(String filename, Long ownerId);
+
+    List<FileRecord> findByOwnerIdAndFilenameInAndDeletedFalse(Long ownerId, Collection<String> filenames);
+
+    List<FileRecord> findByOwnerIdAndFilenameInAndDeletedTrue(Long ownerId, Collection<String> filenames);
+
+    List<FileRecord> findByOwnerIdAndFilenameContainingIgnoreCaseAndDeletedFalse(Long ownerId, String keyword);
+
+    @Query("select f.filename from FileRecord f where f.owner.id = :ownerId and f.deleted = false")
+    List<String> findFilenamesByOwnerId(@Param("ownerId") Long ownerId);
+
+    // Keyset pages over (uploadTime, id), projected straight into FileSummary without loading entities.
+    // Rows without an uploadTime sort as the oldest (after everything newest-first, before everything
+    // oldest-first) and page by id alone; the *Undated variants continue from a cursor on such a row.
+
+    String SUMMARY = "select new com.shruthi.vault.dto.FileSummary(f.id, f.filename, f.size, f.uploadTime, f.contentType)"
+            + " from FileRecord f where f.owner.id = :ownerId and f.deleted = false";
+
+    String NEWEST = " order by f.uploadTime desc nulls last, f.id desc";
+
+    String OLDEST = " order by f.uploadTime asc nulls first, f.id asc";
+
+    @Query(SUMMARY + NEWEST)
+    Stream<FileSummary> streamNewest(@Param("ownerId") Long ownerId, Pageable limit);
+
+    @Query(SUMMARY + " and (f.uploadTime < :time or (f.uploadTime = :time and f.id < :id) or f.uploadTime is null)" + NEWEST)
+    Stream<FileSummary> streamNewestAfter(@Param("ownerId") Long ownerId, @Param("time") LocalDateTime time,
+                                          @Param("id") Long id, Pageable limit);
+
+    @Query(SUMMARY + " and f.uploadTime is null and f.id < :id" + NEWEST)
+    Stream<FileSummary> streamNewestAfterUndated(@Param("ownerId") Long ownerId, @Param("id") Long id, Pageable limit);
+
+    @Query(SUMMARY + OLDEST)
+    Stream<FileSummary> streamOldest(@Param("ownerId") Long ownerId, Pageable limit);
+
+    @Query(SUMMARY + " and (f.uploadTime > :time or (f.uploadTime = :time and f.id > :id))" + OLDEST)
+    Stream<FileSummary> streamOldestAfter(@Param("ownerId") Long ownerId, @Param("time") LocalDateTime time,
+                                          @Param("id") Long id, Pageable limit);
+
+    @Query(SUMMARY + " and (f.uploadTime is not null or f.id > :id)" + OLDEST)
+    Stream<FileSummary> streamOldestAfterUndated(@Param("ownerId") Long ownerId, @Param("id") Long id, Pageable limit);
+
+    @Query("select new com.shruthi.vault.search.IndexedFile(f.id, f.owner.id, f.filename) from FileRecord f"
+            + " where f.deleted = false and f.id > :afterId order by f.id")
+    List<IndexedFile> findIndexBatch(@Param("afterId") Long afterId, Pageable limit);
+
+    // Set-based bulk delete: one UPDATE for all of an owner's live files
+
+    @Modifying
+    @Query("update FileRecord f set f.deleted = true, f.deletedAt = :now, f.purgePending = :purge"
+            + " where f.owner.id = :ownerId and f.deleted = false")
+    int markAllDeleted(@Param("ownerId") Long ownerId, @Param("purge") boolean purge, @Param("now") LocalDateTime now);
+
+    List<FileRecord> findByOwnerIdAndPurgePendingTrueOrderByIdAsc(Long ownerId, Pageable limit);
+
+    // Only while the row is still a deleted file: of several jobs or nodes purging the same row,
+    // exactly one gets 1 back, and only that one may release its content
+    @Modifying
+    @Query("delete from FileRecord f where f.id = :id and f.deleted = true")
+    int purgeDeleted(@Param("id") Long id);
+
+    /**
+     * Purges the rows one by one, in id order so concurrent purges never deadlock, in one transaction.
+     *
+     * @return the ids this call removed; rows already purged by someone else are left out
+     */
+    @Transactional
+    default List<Long> purgeDeleted(Collection<Long> ids) {
+        return ids.stream().sorted().filter(id -> purgeDeleted(id) == 1).toList();
+    }
+
+    // What markAllDeleted(ownerId, ..., now) just took out of the owner's live files
+    @Query("select coalesce(sum(f.size), 0) from FileRecord f where f.owner.id = :ownerId and f.deleted = true"
+            + " and f.deletedAt = :deletedAt")
+    long sumSizeDeletedAt(@Param("ownerId") Long ownerId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    // Usage recount: live files per owner
+    @Query("select new com.shruthi.vault.dto.OwnerUsage(f.owner.id, coalesce(sum(f.size), 0), count(f)) from FileRecord f"
+            + " where f.deleted = false group by f.owner.id")
+    List<OwnerUsage> sumLiveByOwner();
+
+    // Storage sweeper
+
+    // References per storage key; soft-deleted rows hold theirs until purged
+    @Query("select new com.shruthi.vault.dto.ReferenceCount(f.storagePath, count(f)) from FileRecord f"
+            + " where f.storagePath in :keys group by f.storagePath")
+    List<ReferenceCount> countByStoragePaths(@Param("keys") Collection<String> keys);
+
+    // Soft-deleted before deletedAt existed: their retention window starts now
+    @Transactional
+    @Modifying
+    @Query("update FileRecord f set f.deletedAt = :now where f.deleted = true and f.deletedAt is null")
+    int stampDeletedAt(@Param("now") LocalDateTime now);
+
+    List<FileRecord> findByDeletedTrueAndPurgePendingFalseAndDeletedAtBeforeOrderByIdAsc(LocalDateTime cutoff, Pageable limit);
+
+    List<FileRecord> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable limit);
+
+    boolean existsByStoragePathEndingWith(String suffix);
+
+    // Records still pointing at a plain file from before the blob store, for migration
+    @Query("select r from FileRecord r where r.id > :afterId and r.storagePath not like 'sha256/%'"
+            + " and r.storagePath not like 'cdc/%' order by r.id")
+    List<FileRecord> findPlainStored(@Param("afterId") Long afterId, Pageable limit);
+
+    // Only if the record still points at the old path, i.e. wasn't overwritten or deleted meanwhile
+    @Transactional
+    @Modifying
+    @Query("update FileRecord r set r.storagePath = :storageKey, r.contentHash = :contentHash, r.encoding = :encoding,"
+            + " r.storedSize = :storedSize where r.id = :id and r.storagePath = :oldPath")
+    int moveContent(@Param("id") Long id, @Param("oldPath") String oldPath, @Param("storageKey") String storageKey,
+                    @Param("contentHash") String contentHash, @Param("encoding") String encoding, @Param("storedSize") Long storedSize);
 }
@@ -0,0 +1,43 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.dto.ReferenceCount;
+import com.shruthi.vault.model.FileVersion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface FileVersionRepository extends JpaRepository<FileVersion, Long> {
+
+    List<FileVersion> findByFileRecordIdOrderByVersionDesc(Long fileRecordId);
+
+    Optional<FileVersion> findByFileRecordIdAndVersion(Long fileRecordId, int version);
+
+    List<FileVersion> findByFileRecordIdIn(Collection<Long> fileRecordIds);
+
+    List<FileVersion> findByReplacedAtBefore(LocalDateTime cutoff, Pageable limit);
+
+    boolean existsByStoragePathEndingWith(String suffix);
+
+    @Query("select new com.shruthi.vault.dto.ReferenceCount(v.storagePath, count(v)) from FileVersion v"
+            + " where v.storagePath in :keys group by v.storagePath")
+    List<ReferenceCount> countByStoragePaths(@Param("keys") Collection<String> keys);
+
+    @Query("select v from FileVersion v where v.id > :afterId and v.storagePath not like 'sha256/%'"
+            + " and v.storagePath not like 'cdc/%' order by v.id")
+    List<FileVersion> findPlainStored(@Param("afterId") Long afterId, Pageable limit);
+
+    @Transactional
+    @Modifying
+    @Query("update FileVersion v set v.storagePath = :storageKey, v.contentHash = :contentHash, v.encoding = :encoding,"
+            + " v.storedSize = :storedSize where v.id = :id and v.storagePath = :oldPath")
+    int moveContent(@Param("id") Long id, @Param("oldPath") String oldPath, @Param("storageKey") String storageKey,
+                    @Param("contentHash") String contentHash, @Param("encoding") String encoding, @Param("storedSize") Long storedSize);
+}
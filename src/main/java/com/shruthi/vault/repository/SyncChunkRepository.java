@@ -0,0 +1,36 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.SyncChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface SyncChunkRepository extends JpaRepository<SyncChunk, Long> {
+
+    @Query("select c.hash from SyncChunk c where c.ownerId = :ownerId and c.hash in :hashes")
+    List<String> findHashes(@Param("ownerId") Long ownerId, @Param("hashes") Collection<String> hashes);
+
+    @Query("select coalesce(sum(c.size), 0) from SyncChunk c where c.ownerId = :ownerId")
+    long sumSizes(@Param("ownerId") Long ownerId);
+
+    @Transactional
+    @Modifying
+    @Query("update SyncChunk c set c.uploadedAt = :uploadedAt where c.ownerId = :ownerId and c.hash = :hash")
+    int touch(@Param("ownerId") Long ownerId, @Param("hash") String hash, @Param("uploadedAt") LocalDateTime uploadedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from SyncChunk c where c.ownerId = :ownerId and c.hash in :hashes")
+    int deleteHashes(@Param("ownerId") Long ownerId, @Param("hashes") Collection<String> hashes);
+
+    @Transactional
+    @Modifying
+    @Query("delete from SyncChunk c where c.uploadedAt < :cutoff")
+    int deleteUploadedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
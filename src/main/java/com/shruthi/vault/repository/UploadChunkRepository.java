@@ -0,0 +1,28 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.UploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface UploadChunkRepository extends JpaRepository<UploadChunk, Long> {
+
+    boolean existsBySessionIdAndChunkIndex(String sessionId, int chunkIndex);
+
+    long countBySessionId(String sessionId);
+
+    @Query("select c.chunkIndex from UploadChunk c where c.sessionId = :sessionId order by c.chunkIndex")
+    List<Integer> findChunkIndexes(@Param("sessionId") String sessionId);
+
+    @Query("select coalesce(sum(c.size), 0) from UploadChunk c where c.sessionId = :sessionId")
+    long sumSizes(@Param("sessionId") String sessionId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadChunk c where c.sessionId = :sessionId")
+    void deleteBySessionId(@Param("sessionId") String sessionId);
+}
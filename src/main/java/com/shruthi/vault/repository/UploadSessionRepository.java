@@ -0,0 +1,24 @@
+package com.shruthi.vault.repository;
+
+import com.shruthi.vault.model.UploadSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Sessions from before lastActivityAt existed count from their creation
+    @Query("select s from UploadSession s where coalesce(s.lastActivityAt, s.createdAt) < :cutoff")
+    List<UploadSession> findIdleSince(@Param("cutoff") LocalDateTime cutoff, Pageable limit);
+
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.lastActivityAt = :now where s.id = :id")
+    void touch(@Param("id") String id, @Param("now") LocalDateTime now);
+}
@@ -2,10 +2,44 @@ package com.shruthi.vault.repository;
 
 import com.shruthi.vault.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 	Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
 
+    @Query("select u.username from User u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    // In place, so a rehash at login doesn't write back the rest of the row
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
+
+    // Usage accounting: deltas are added in place, so flushes never read-modify-write the row
+
+    @Modifying
+    @Query("update User u set u.usedBytes = coalesce(u.usedBytes, 0) + :bytes,"
+            + " u.fileCount = coalesce(u.fileCount, 0) + :files where u.id = :id")
+    int addUsage(@Param("id") Long id, @Param("bytes") long bytes, @Param("files") long files);
+
+    @Modifying
+    @Query("update User u set u.usedBytes = :bytes, u.fileCount = :files where u.id = :id")
+    int setUsage(@Param("id") Long id, @Param("bytes") long bytes, @Param("files") long files);
+
+    @Modifying
+    @Query("update User u set u.usedBytes = 0, u.fileCount = 0")
+    int clearUsage();
+
+    @Modifying
+    @Query("update User u set u.quotaBytes = :quota where u.id = :id")
+    int setQuota(@Param("id") Long id, @Param("quota") Long quota);
+
+    boolean existsByUsedBytesIsNull();
+
 }
@@ -0,0 +1,212 @@
+package com.shruthi.vault.search;
+
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory trigram index over live filenames. A query is narrowed to the intersection of the
+ * posting lists of its trigrams (smallest first) and only those candidates are checked against
+ * the actual pattern, so searches never scan file_records. Kept current by
+ * {@link FilenameIndexListener} and rebuilt from the database at startup.
+ */
+@Slf4j
+@Component
+public class FilenameIndex {
+
+    public enum Mode { SUBSTRING, PREFIX, GLOB }
+
+    private static final Comparator<IndexedFile> ORDER =
+            Comparator.comparing(IndexedFile::filename).thenComparing(IndexedFile::id);
+
+    private final FileRecordRepository fileRecordRepository;
+    private final UserRepository userRepository;
+
+    private final Map<Long, IndexedFile> files = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> postings = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> byOwner = new ConcurrentHashMap<>();
+    private final Map<Long, String> ownerNames = new ConcurrentHashMap<>();
+
+    private final int maxMatches;
+    private volatile boolean ready;
+
+    public FilenameIndex(FileRecordRepository fileRecordRepository,
+                         UserRepository userRepository,
+                         @Value("${search.max-matches:10000}") int maxMatches) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.userRepository = userRepository;
+        this.maxMatches = maxMatches;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        Long afterId = 0L;
+        List<IndexedFile> batch;
+        do {
+            batch = fileRecordRepository.findIndexBatch(afterId, PageRequest.of(0, 5000));
+            for (IndexedFile file : batch) {
+                put(file);
+            }
+            if (!batch.isEmpty()) afterId = batch.get(batch.size() - 1).id();
+        } while (!batch.isEmpty());
+
+        ready = true;
+        log.info("Filename index built: {} files in {} ms", files.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * False until the startup rebuild finishes; searches are turned away until then.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void put(IndexedFile file) {
+        IndexedFile previous = files.put(file.id(), file);
+        if (previous != null) {
+            if (previous.filename().equals(file.filename()) && previous.ownerId().equals(file.ownerId())) return;
+            unlink(previous);
+        }
+        byOwner.computeIfAbsent(file.ownerId(), k -> ConcurrentHashMap.newKeySet()).add(file.id());
+        for (long trigram : trigrams(file.filename().toLowerCase(Locale.ROOT))) {
+            postings.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(file.id());
+        }
+    }
+
+    public void remove(Long id) {
+        IndexedFile previous = files.remove(id);
+        if (previous != null) unlink(previous);
+    }
+
+    /**
+     * Drops every file of one owner; used after set-based updates that bypass entity listeners.
+     */
+    public void removeOwner(Long ownerId) {
+        Set<Long> owned = byOwner.get(ownerId);
+        if (owned == null) return;
+        for (Long id : List.copyOf(owned)) {
+            remove(id);
+        }
+    }
+
+    private void unlink(IndexedFile file) {
+        Set<Long> owned = byOwner.get(file.ownerId());
+        if (owned != null) owned.remove(file.id());
+        for (long trigram : trigrams(file.filename().toLowerCase(Locale.ROOT))) {
+            Set<Long> ids = postings.get(trigram);
+            if (ids != null) ids.remove(file.id());
+        }
+    }
+
+    /**
+     * @param ownerId restrict to one owner's files, or null to search everyone's (admin)
+     * @return matches ordered by filename then id, after skipping {@code offset}; pages end at the
+     *         first {@code search.max-matches} matches
+     */
+    public List<IndexedFile> search(String query, Mode mode, Long ownerId, int offset, int limit) {
+        int window = (int) Math.min((long) offset + limit, maxMatches);
+        if (offset >= window) return List.of();
+        String q = query.toLowerCase(Locale.ROOT);
+        Pattern glob = mode == Mode.GLOB ? globPattern(q) : null;
+
+        // Candidate sets: the owner's files (if scoped) plus one posting list per trigram
+        List<Set<Long>> sets = new ArrayList<>();
+        if (ownerId != null) sets.add(byOwner.getOrDefault(ownerId, Set.of()));
+        for (String literal : literals(q, mode)) {
+            for (long trigram : trigrams(literal)) {
+                sets.add(postings.getOrDefault(trigram, Set.of()));
+            }
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+
+        // Every candidate is checked, but only the first `window` matches in page order are kept:
+        // the heap's head is the last of them and gives way to any match that sorts earlier
+        Iterable<Long> candidates = sets.isEmpty() ? files.keySet() : sets.get(0);
+        PriorityQueue<IndexedFile> top = new PriorityQueue<>(ORDER.reversed());
+        for (Long id : candidates) {
+            if (!containedInAll(id, sets)) continue;
+            IndexedFile file = files.get(id);
+            if (file == null || !matches(file.filename().toLowerCase(Locale.ROOT), q, mode, glob)) continue;
+            if (top.size() < window) {
+                top.add(file);
+            } else if (ORDER.compare(file, top.peek()) < 0) {
+                top.poll();
+                top.add(file);
+            }
+        }
+
+        List<IndexedFile> matches = new ArrayList<>(top);
+        matches.sort(ORDER);
+        if (offset >= matches.size()) return List.of();
+        return matches.subList(offset, matches.size());
+    }
+
+    public String ownerName(Long ownerId) {
+        String name = ownerNames.get(ownerId);
+        if (name != null) return name;
+        // Not computeIfAbsent: the query would run under the map's bin lock
+        name = userRepository.findUsernameById(ownerId).orElse("?");
+        ownerNames.putIfAbsent(ownerId, name);
+        return name;
+    }
+
+    private static boolean containedInAll(Long id, List<Set<Long>> sets) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(id)) return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(String filename, String q, Mode mode, Pattern glob) {
+        return switch (mode) {
+            case SUBSTRING -> filename.contains(q);
+            case PREFIX -> filename.startsWith(q);
+            case GLOB -> glob.matcher(filename).matches();
+        };
+    }
+
+    /**
+     * Literal runs every match must contain; for globs these are the pieces between wildcards.
+     */
+    private static List<String> literals(String q, Mode mode) {
+        if (mode != Mode.GLOB) return List.of(q);
+        return Arrays.stream(q.split("[*?]+")).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static Pattern globPattern(String q) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : q.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (!literal.isEmpty()) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (!literal.isEmpty()) regex.append(Pattern.quote(literal.toString()));
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static long[] trigrams(String s) {
+        if (s.length() < 3) return new long[0];
+        long[] result = new long[s.length() - 2];
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            result[i] = ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+        }
+        return result;
+    }
+}
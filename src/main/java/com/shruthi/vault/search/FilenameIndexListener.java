@@ -0,0 +1,55 @@
+package com.shruthi.vault.search;
+
+import com.shruthi.vault.model.FileRecord;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Applies FileRecord inserts, renames, soft deletes and removals to the {@link FilenameIndex}
+ * once the surrounding transaction commits, so rolled-back writes never show up in searches.
+ */
+@Component
+public class FilenameIndexListener {
+
+    private final ObjectProvider<FilenameIndex> index;
+
+    public FilenameIndexListener(ObjectProvider<FilenameIndex> index) {
+        this.index = index;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(FileRecord record) {
+        Long id = record.getId();
+        if (record.isDeleted()) {
+            afterCommit(() -> index.getObject().remove(id));
+        } else {
+            IndexedFile file = new IndexedFile(id, record.getOwner().getId(), record.getFilename());
+            afterCommit(() -> index.getObject().put(file));
+        }
+    }
+
+    @PostRemove
+    public void removed(FileRecord record) {
+        Long id = record.getId();
+        afterCommit(() -> index.getObject().remove(id));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,7 @@
+package com.shruthi.vault.search;
+
+/**
+ * What the filename index keeps per live file; enough to answer a search without the database.
+ */
+public record IndexedFile(Long id, Long ownerId, String filename) {
+}
@@ -1,26 +1,94 @@
 package com.shruthi.vault.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.shruthi.vault.model.User;
 import com.shruthi.vault.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+
+@Slf4j
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    // Principals for already-authenticated (JWT) requests; never used for password checks
+    private final Cache<String, VaultPrincipal> principals;
+
+    // Time to load a principal from the database on a cache miss
+    private final Timer principalLoad;
+
+    public CustomUserDetailsService(@Value("${security.principal-cache.maximum-size:10000}") long maximumSize,
+                                    @Value("${security.principal-cache.ttl:5m}") Duration ttl,
+                                    MeterRegistry registry) {
+        this.principals = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, principals, "security.principals");
+        this.principalLoad = Timer.builder("vault.principal.load")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
-        
+
         return new org.springframework.security.core.userdetails.User(
             user.getUsername(),
             user.getPassword(),
             user.getAuthorities() // We'll fix this in the next step if needed
         );
     }
+
+    /**
+     * Stores a rehash of the password made at login. The principal cache holds no password, so
+     * it stays as it is.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        log.debug("Rehashed password of {}", user.getUsername());
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
+    }
+
+    /**
+     * Cached principal lookup for the JWT filter. Entries are evicted when the user row is
+     * updated or deleted (see {@link UserCacheEvictionListener}). The password hash is never cached.
+     */
+    public VaultPrincipal loadPrincipal(String username) throws UsernameNotFoundException {
+        VaultPrincipal cached = principals.getIfPresent(username);
+        if (cached != null) return cached;
+
+        // Loaded outside the cache's compute lock: a query inside it would pin a virtual thread's
+        // carrier for the whole round trip
+        Timer.Sample sample = Timer.start();
+        User user;
+        try {
+            user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        } finally {
+            sample.stop(principalLoad);
+        }
+        VaultPrincipal principal = new VaultPrincipal(user.getId(), user.getUsername(), user.getRole());
+        principals.put(username, principal);
+        return principal;
+    }
+
+    public void evict(String username) {
+        principals.invalidate(username);
+    }
 }
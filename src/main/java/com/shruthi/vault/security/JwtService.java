@@ -1,12 +1,21 @@
 package com.shruthi.vault.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -14,8 +23,59 @@ public class JwtService {
 
     private static final String SECRET_KEY = "your-256-bit-secret-your-256-bit-secret"; // Replace with env var ideally
 
-    private Key getSignInKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // Key and parser are immutable and thread-safe, so build them once
+    private final Key signInKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signInKey).build();
+
+    // Verified token -> claims; an entry never outlives the token's own expiry
+    private final Cache<String, Claims> verifiedTokens;
+
+    // Lifetime of issued tokens; clients renew them with a refresh token
+    private final Duration accessTokenTtl;
+
+    // Parse time split by whether the signature had to be verified
+    private final Timer cachedParse;
+    private final Timer verifiedParse;
+    private final Timer rejectedParse;
+
+    public JwtService(@Value("${jwt.claims-cache.maximum-size:10000}") long maximumSize,
+                      @Value("${jwt.claims-cache.ttl:5m}") Duration ttl,
+                      @Value("${jwt.access-token.ttl:24h}") Duration accessTokenTtl,
+                      MeterRegistry registry) {
+        this.accessTokenTtl = accessTokenTtl;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        long untilExpiry = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(ttl.toMillis(), untilExpiry)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        CaffeineCacheMetrics.monitor(registry, verifiedTokens, "jwt.claims");
+
+        this.cachedParse = parseTimer(registry, "cached");
+        this.verifiedParse = parseTimer(registry, "verified");
+        this.rejectedParse = parseTimer(registry, "rejected");
+    }
+
+    private static Timer parseTimer(MeterRegistry registry, String result) {
+        return Timer.builder("vault.jwt.parse")
+                .tag("result", result)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -31,11 +91,39 @@ public class JwtService {
                 .setClaims(claims)
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + 86400000)) // 24 hrs
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .setExpiration(new Date(System.currentTimeMillis() + accessTokenTtl.toMillis()))
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * Verifies signature and expiry once and returns the claims. Repeat calls with the same
+     * token are served from cache until the token (or the cache TTL) expires.
+     *
+     * @throws JwtException if the token is malformed, tampered with or expired
+     */
+    public Claims parseToken(String token) {
+        long started = System.nanoTime();
+        Claims cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            cachedParse.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (RuntimeException e) {
+            rejectedParse.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (claims.getExpiration() != null) {
+            verifiedTokens.put(token, claims);
+        }
+        verifiedParse.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return claims;
+    }
+
     public boolean isTokenValid(String token, UserDetails userDetails) {
         String username = extractUsername(token);
         return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
@@ -50,10 +138,6 @@ public class JwtService {
     }
 
     public Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parseToken(token);
     }
 }
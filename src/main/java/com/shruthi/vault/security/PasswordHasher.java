@@ -0,0 +1,134 @@
+package com.shruthi.vault.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The application's password encoder. New hashes use {@code password.encoding.algorithm} with its
+ * configured work factor and carry an {@code {id}} prefix; hashes of the other algorithms still
+ * match, as do bcrypt hashes from before the prefix, and {@link #upgradeEncoding} flags any
+ * of them (or a lower work factor) so a successful login rehashes the password.
+ * <p>
+ * Hashing is slow by design, so it runs on a pool of its own: a burst of logins takes at most
+ * {@code threads} cores from file transfers, and once {@code queue-capacity} hashes are waiting
+ * further ones fail fast with a {@link PasswordHashingBusyException}.
+ */
+@Component
+public class PasswordHasher implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor workers;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(@Value("${password.encoding.algorithm:bcrypt}") String algorithm,
+                          @Value("${password.bcrypt.strength:10}") int bcryptStrength,
+                          @Value("${password.argon2.memory:19MB}") DataSize argon2Memory,
+                          @Value("${password.argon2.iterations:2}") int argon2Iterations,
+                          @Value("${password.argon2.parallelism:1}") int argon2Parallelism,
+                          @Value("${password.hashing.threads:0}") int threads,
+                          @Value("${password.hashing.queue-capacity:200}") int queueCapacity,
+                          MeterRegistry registry) {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("argon2", new Argon2PasswordEncoder(16, 32, argon2Parallelism,
+                Math.toIntExact(argon2Memory.toKilobytes()), argon2Iterations));
+        encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalArgumentException("Unknown password.encoding.algorithm " + algorithm + ", expected one of " + encoders.keySet());
+        }
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(algorithm, encoders);
+        // Hashes stored before the {id} prefix are plain bcrypt
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        this.delegate = delegating;
+
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.encodeTimer = hashTimer(registry, "encode");
+        this.matchesTimer = hashTimer(registry, "matches");
+        this.rejected = Counter.builder("vault.password.rejected")
+                .description("Password hashes refused because the hashing queue was full").register(registry);
+        Gauge.builder("vault.password.queue", workers, pool -> pool.getQueue().size())
+                .description("Password hashes waiting for a hashing thread").register(registry);
+    }
+
+    private static Timer hashTimer(MeterRegistry registry, String op) {
+        return Timer.builder("vault.password.hash")
+                .tag("op", op)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return hash(encodeTimer, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return hash(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Runs the hash on the pool and waits for it; the timer covers the hash, not the queueing.
+     */
+    private <T> T hash(Timer timer, Callable<T> task) {
+        Future<T> future;
+        try {
+            future = workers.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingBusyException();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
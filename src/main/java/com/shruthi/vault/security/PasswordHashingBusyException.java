@@ -0,0 +1,11 @@
+package com.shruthi.vault.security;
+
+/**
+ * Too many password hashes are already waiting; the login or registration should be retried.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException() {
+        super("Too many password checks in progress, retry later");
+    }
+}
@@ -0,0 +1,93 @@
+package com.shruthi.vault.security;
+
+import com.shruthi.vault.model.RefreshToken;
+import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Long-lived, single-use tokens that renew an access token without the password, so renewal
+ * costs a hash lookup instead of a password hash. Tokens are random and stored only as their
+ * SHA-256; redeeming one deletes it, and the caller hands out a new one in its place.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${jwt.refresh-token.ttl:30d}") Duration ttl) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.ttl = ttl;
+    }
+
+    public String issue(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        LocalDateTime now = LocalDateTime.now();
+        refreshTokenRepository.save(RefreshToken.builder()
+                .tokenHash(hash(token))
+                .user(user)
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .build());
+        return token;
+    }
+
+    /**
+     * Uses up the token.
+     *
+     * @return its user
+     * @throws BadCredentialsException if the token is unknown, expired or already used
+     */
+    public User redeem(String token) {
+        if (token == null || token.isBlank()) throw new BadCredentialsException("Missing refresh token");
+        String tokenHash = hash(token);
+        RefreshToken stored = refreshTokenRepository.findWithUserByTokenHash(tokenHash)
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        // Whoever deletes the row owns the redemption, even if two requests found it
+        if (refreshTokenRepository.deleteByTokenHash(tokenHash) == 0 || stored.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new BadCredentialsException("Invalid refresh token");
+        }
+        return stored.getUser();
+    }
+
+    public void revoke(String token) {
+        if (token == null || token.isBlank()) return;
+        refreshTokenRepository.deleteByTokenHash(hash(token));
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-token.purge-interval:3600000}", initialDelayString = "${jwt.refresh-token.purge-interval:3600000}")
+    public void purgeExpired() {
+        int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) log.info("Purged {} expired refresh tokens", purged);
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
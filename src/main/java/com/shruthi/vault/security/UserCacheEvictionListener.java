@@ -0,0 +1,28 @@
+package com.shruthi.vault.security;
+
+import com.shruthi.vault.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops cached principals when a user's role (or anything else) changes or the user is deleted,
+ * so the next request re-reads the user instead of acting on stale authorities.
+ */
+@Component
+public class UserCacheEvictionListener {
+
+    // Looked up lazily: the listener is created while the EntityManagerFactory is still being built
+    private final ObjectProvider<CustomUserDetailsService> userDetailsService;
+
+    public UserCacheEvictionListener(ObjectProvider<CustomUserDetailsService> userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        userDetailsService.getObject().evict(user.getUsername());
+    }
+}
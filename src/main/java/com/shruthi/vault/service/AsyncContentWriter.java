@@ -0,0 +1,130 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.ratelimit.BandwidthShaper;
+import com.shruthi.vault.storage.StoredContent;
+import io.micrometer.observation.Observation;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes a byte range of stored content with servlet non-blocking I/O: the container calls back
+ * whenever the socket can take more, so a slow client holds a connection but never a thread.
+ * Closes the content when the exchange ends, however it ends. Over the user's bandwidth, writing
+ * stops and a timer resumes it on a container thread, so a paced download doesn't hold one either.
+ */
+@Slf4j
+final class AsyncContentWriter implements WriteListener, AsyncListener {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // ServerHttpObservationFilter only stops its observation on an async re-dispatch, which a
+    // plain complete() never triggers, so the request would otherwise stay "active" forever
+    private static final String OBSERVATION_ATTRIBUTE = ServerHttpObservationFilter.class.getName() + ".observation";
+
+    private final AsyncContext async;
+    private final ServletOutputStream out;
+    private final StoredContent content;
+    private final Observation observation;
+    private final BandwidthShaper shaper;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long position;
+    private long remaining;
+    private volatile boolean done;
+
+    private AsyncContentWriter(AsyncContext async, ServletOutputStream out, StoredContent content, long position, long count,
+                               BandwidthShaper shaper) {
+        this.async = async;
+        this.out = out;
+        this.content = content;
+        this.observation = async.getRequest().getAttribute(OBSERVATION_ATTRIBUTE) instanceof Observation o ? o : null;
+        this.shaper = shaper;
+        this.position = position;
+        this.remaining = count;
+    }
+
+    /**
+     * Takes ownership of {@code content}; the caller must not close it.
+     *
+     * @param shaper the user's download bandwidth, or null to write as fast as the client reads
+     */
+    static void start(AsyncContext async, StoredContent content, long position, long count, long timeoutMillis,
+                      BandwidthShaper shaper) throws IOException {
+        async.setTimeout(timeoutMillis);
+        AsyncContentWriter writer = new AsyncContentWriter(async, async.getResponse().getOutputStream(), content, position, count, shaper);
+        async.addListener(writer);
+        writer.out.setWriteListener(writer);
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        while (out.isReady()) {
+            if (remaining == 0) {
+                async.complete();
+                return;
+            }
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, remaining));
+            int n = content.read(position, buffer);
+            if (n <= 0) throw new EOFException("Content ended " + remaining + " bytes early");
+            out.write(buffer.array(), 0, n);
+            position += n;
+            remaining -= n;
+            // The container calls back only once isReady() has returned false, so nothing else
+            // writes until the timer resumes
+            if (shaper != null && shaper.defer(n, this::wake)) return;
+        }
+    }
+
+    private void wake() {
+        if (!done) async.start(this::resume);
+    }
+
+    private void resume() {
+        if (done) return;
+        try {
+            onWritePossible();
+        } catch (IOException | RuntimeException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.debug("Download aborted", t);
+        if (observation != null) observation.error(t);
+        async.complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) throws IOException {
+        done = true;
+        try {
+            content.close();
+        } finally {
+            if (observation != null) observation.stop();
+        }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        async.complete();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        async.complete();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+}
@@ -1,10 +1,13 @@
 package com.shruthi.vault.service;
 
+import com.shruthi.vault.audit.AuditLog;
 import com.shruthi.vault.dto.*;
+import com.shruthi.vault.model.AuditAction;
 import com.shruthi.vault.model.Role;
 import com.shruthi.vault.model.User;
 import com.shruthi.vault.repository.UserRepository;
 import com.shruthi.vault.security.JwtService;
+import com.shruthi.vault.security.RefreshTokenService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -19,7 +22,9 @@ public class AuthService {
 	private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final RefreshTokenService refreshTokenService;
     private final AuthenticationManager authenticationManager;
+    private final AuditLog auditLog;
 
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
@@ -29,13 +34,16 @@ public class AuthService {
                 .username(request.getUsername())
                 .password(passwordEncoder.encode(request.getPassword()))
                 .role(request.getRole() == null ? Role.USER : request.getRole())
+                .usedBytes(0L)
+                .fileCount(0L)
                 .build();
 
         userRepository.save(user);
+        auditLog.record(user.getId(), user.getUsername(), AuditAction.REGISTER, null, user.getRole().name());
 
-        String token = jwtService.generateToken(user);
-        return AuthResponse.builder().token(token).build();
+        return tokensFor(user);
     }
+
     public AuthResponse login(LoginRequest request) {
         try {
             authenticationManager.authenticate(
@@ -45,13 +53,40 @@ public class AuthService {
                     )
             );
         } catch (AuthenticationException e) {
+            auditLog.record(null, request.getUsername(), AuditAction.LOGIN_FAILED, null, e.getClass().getSimpleName());
             throw new RuntimeException("Invalid credentials");
         }
         User user = userRepository.findByUsername(request.getUsername())
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        auditLog.record(user.getId(), user.getUsername(), AuditAction.LOGIN, null, null);
+
+        return tokensFor(user);
+    }
+
+    /**
+     * New access token for a refresh token, which is used up and replaced. No password hashing,
+     * and the access token carries the user's current roles.
+     *
+     * @throws AuthenticationException if the refresh token is invalid, expired or already used
+     */
+    public AuthResponse refresh(RefreshRequest request) {
+        User user = refreshTokenService.redeem(request.getRefreshToken());
+        auditLog.record(user.getId(), user.getUsername(), AuditAction.TOKEN_REFRESH, null, null);
+        return tokensFor(user);
+    }
+
+    /**
+     * Revokes the refresh token; access tokens already issued stay valid until they expire.
+     */
+    public void logout(RefreshRequest request) {
+        refreshTokenService.revoke(request.getRefreshToken());
+    }
 
-        String token = jwtService.generateToken(user);
-        return AuthResponse.builder().token(token).build();
+    private AuthResponse tokensFor(User user) {
+        return AuthResponse.builder()
+                .token(jwtService.generateToken(user))
+                .refreshToken(refreshTokenService.issue(user))
+                .build();
     }
 
 }
@@ -0,0 +1,262 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.BatchUploadResult;
+import com.shruthi.vault.dto.BatchUploadResult.Status;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.FileVersion;
+import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.FileVersionRepository;
+import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Many files in one request. Parts are streamed into storage in parallel on a small bounded
+ * pool (hashing and encryption are CPU-bound), then every record is written in one transaction
+ * with a single {@code saveAll}. When the pool is saturated the request thread stores its own
+ * parts, so a burst of batches slows down instead of queueing without bound. Files that
+ * already exist get the new content as their next version, in the same transaction, which
+ * runs under the {@link FileNameLocks} of every name in the batch.
+ */
+@Slf4j
+@Service
+public class BatchUploadService {
+
+    private final FileRecordRepository fileRecordRepository;
+    private final FileVersionRepository fileVersionRepository;
+    private final FileVersionService fileVersionService;
+    private final UserRepository userRepository;
+    private final StorageEngine storageEngine;
+    private final FileNameLocks fileNameLocks;
+    private final FileMetadataCache fileMetadataCache;
+    private final UsageService usageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+
+    public BatchUploadService(FileRecordRepository fileRecordRepository,
+                              FileVersionRepository fileVersionRepository,
+                              FileVersionService fileVersionService,
+                              UserRepository userRepository,
+                              StorageEngine storageEngine,
+                              FileNameLocks fileNameLocks,
+                              FileMetadataCache fileMetadataCache,
+                              UsageService usageService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${file.upload.batch-workers:4}") int workerCount,
+                              @Value("${file.upload.batch-queue-capacity:64}") int queueCapacity) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileVersionRepository = fileVersionRepository;
+        this.fileVersionService = fileVersionService;
+        this.userRepository = userRepository;
+        this.storageEngine = storageEngine;
+        this.fileNameLocks = fileNameLocks;
+        this.fileMetadataCache = fileMetadataCache;
+        this.usageService = usageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "batch-upload");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Stores every acceptable part and records it. A part is skipped if it is empty, repeats an
+     * earlier part's name, or (without {@code overwrite}) names an existing file; a part whose
+     * content fails to store is reported and the rest still go through.
+     *
+     * @return one result per part, in request order
+     */
+    public List<BatchUploadResult> upload(Long ownerId, List<MultipartFile> files, boolean overwrite) throws IOException {
+        List<BatchUploadResult> results = new ArrayList<>(files.size());
+        Map<String, MultipartFile> accepted = new LinkedHashMap<>();
+        for (MultipartFile file : files) {
+            String filename = file.getOriginalFilename();
+            BatchUploadResult result = BatchUploadResult.builder().filename(filename).size(file.getSize()).build();
+            results.add(result);
+            if (filename == null || filename.isBlank() || file.isEmpty()) {
+                result.setStatus(Status.EMPTY);
+            } else if (accepted.putIfAbsent(filename, file) != null) {
+                result.setStatus(Status.DUPLICATE);
+            }
+        }
+
+        // One query for every name in the batch instead of one per part
+        Map<String, FileRecord> existing = new HashMap<>();
+        if (!accepted.isEmpty()) {
+            for (FileRecord record : fileRecordRepository.findByOwnerIdAndFilenameInAndDeletedFalse(ownerId, accepted.keySet())) {
+                existing.putIfAbsent(record.getFilename(), record);
+            }
+        }
+        if (!overwrite) {
+            for (BatchUploadResult result : results) {
+                if (result.getStatus() == null && existing.containsKey(result.getFilename())) {
+                    result.setStatus(Status.EXISTS);
+                    accepted.remove(result.getFilename());
+                }
+            }
+        }
+
+        // Parts are spooled already, so each is held against the quota at its full size before
+        // anything is stored; parts that don't fit fail
+        long credit = 0;
+        for (String filename : accepted.keySet()) {
+            if (overwrite && existing.containsKey(filename)) credit += FileVersionService.sizeOf(existing.get(filename).getSize());
+        }
+        UsageService.Reservation reservation = usageService.reserve(ownerId, credit);
+        Map<String, String> failures = new HashMap<>();
+        for (Iterator<Map.Entry<String, MultipartFile>> it = accepted.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, MultipartFile> entry = it.next();
+            try {
+                reservation.hold(entry.getValue().getSize());
+            } catch (QuotaExceededException e) {
+                failures.put(entry.getKey(), e.getMessage());
+                it.remove();
+            }
+        }
+
+        Map<String, Future<StoredBlob>> pending = new LinkedHashMap<>();
+        for (Map.Entry<String, MultipartFile> entry : accepted.entrySet()) {
+            MultipartFile file = entry.getValue();
+            pending.put(entry.getKey(), workers.submit(() -> storageEngine.store(file.getInputStream(), file.getContentType())));
+        }
+
+        Map<String, StoredBlob> stored = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<StoredBlob>> entry : pending.entrySet()) {
+            try {
+                stored.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                log.warn("Batch upload of {} failed", entry.getKey(), e.getCause());
+                failures.put(entry.getKey(), String.valueOf(e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.values().forEach(f -> f.cancel(true));
+                releaseAll(stored.values().stream().map(StoredBlob::storageKey).toList());
+                reservation.close();
+                throw new IOException("Interrupted while storing batch", e);
+            }
+        }
+
+        // Same check-then-write as single uploads, under the files' locks; names may have been taken meanwhile
+        List<ReentrantLock> locks = fileNameLocks.getAll(ownerId, stored.keySet());
+        locks.forEach(ReentrantLock::lock);
+        List<FileVersion> versions = new ArrayList<>();
+        try {
+            existing.clear();
+            if (!stored.isEmpty()) {
+                for (FileRecord record : fileRecordRepository.findByOwnerIdAndFilenameInAndDeletedFalse(ownerId, stored.keySet())) {
+                    existing.putIfAbsent(record.getFilename(), record);
+                }
+            }
+            if (!overwrite) {
+                for (BatchUploadResult result : results) {
+                    if (result.getStatus() == null && existing.containsKey(result.getFilename()) && stored.containsKey(result.getFilename())) {
+                        result.setStatus(Status.EXISTS);
+                        releaseAll(List.of(stored.remove(result.getFilename()).storageKey()));
+                    }
+                }
+            }
+
+            // Soft-deleted files still hold the names about to be created
+            List<String> newNames = stored.keySet().stream().filter(filename -> !existing.containsKey(filename)).toList();
+            if (!newNames.isEmpty()) {
+                fileVersionService.purgeDeleted(fileRecordRepository.findByOwnerIdAndFilenameInAndDeletedTrue(ownerId, newNames));
+            }
+
+            List<FileRecord> records = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+            User owner = userRepository.getReferenceById(ownerId);
+            long bytes = 0;
+            long created = 0;
+            for (Map.Entry<String, StoredBlob> entry : stored.entrySet()) {
+                StoredBlob blob = entry.getValue();
+                FileRecord previous = existing.get(entry.getKey());
+                bytes += blob.size() - (previous != null ? FileVersionService.sizeOf(previous.getSize()) : 0);
+                if (previous != null) {
+                    versions.add(fileVersionService.snapshot(previous, now));
+                    fileVersionService.apply(previous, blob, accepted.get(entry.getKey()).getContentType(), now);
+                    records.add(previous);
+                    continue;
+                }
+                created++;
+                records.add(FileRecord.builder()
+                        .filename(entry.getKey())
+                        .storagePath(blob.storageKey())
+                        .size(blob.size())
+                        .contentHash(blob.contentHash())
+                        .contentType(accepted.get(entry.getKey()).getContentType())
+                        .encoding(blob.encoding())
+                        .storedSize(blob.storedSize())
+                        .uploadTime(now)
+                        .version(1)
+                        .owner(owner)
+                        .deleted(false)
+                        .build());
+            }
+
+            if (!records.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        // Replaced content moves to the versions along with its references
+                        fileVersionRepository.saveAll(versions);
+                        fileRecordRepository.saveAll(records);
+                    });
+                } catch (RuntimeException e) {
+                    releaseAll(stored.values().stream().map(StoredBlob::storageKey).toList());
+                    throw e;
+                }
+                usageService.record(ownerId, bytes, created);
+            }
+        } finally {
+            reservation.close();
+            stored.keySet().forEach(filename -> fileMetadataCache.invalidate(ownerId, filename));
+            for (int i = locks.size() - 1; i >= 0; i--) locks.get(i).unlock();
+        }
+        for (FileVersion version : versions) {
+            fileVersionService.prune(version.getFileRecordId());
+        }
+
+        for (BatchUploadResult result : results) {
+            if (result.getStatus() != null) continue;
+            String filename = result.getFilename();
+            if (failures.containsKey(filename)) {
+                result.setStatus(Status.FAILED);
+                result.setMessage(failures.get(filename));
+            } else {
+                result.setStatus(existing.containsKey(filename) ? Status.OVERWRITTEN : Status.UPLOADED);
+                result.setSize(stored.get(filename).size());
+            }
+        }
+        return results;
+    }
+
+    private void releaseAll(List<String> storageKeys) {
+        for (String storageKey : storageKeys) {
+            try {
+                storageEngine.release(storageKey);
+            } catch (IOException e) {
+                log.warn("Could not release {}", storageKey, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,233 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.OwnerUsage;
+import com.shruthi.vault.model.DeleteJob;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.repository.DeleteJobRepository;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.search.FilenameIndex;
+import com.shruthi.vault.storage.StorageEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Delete-all for one owner. Files are hidden with a single set-based UPDATE in the request;
+ * for hard deletes they are also flagged {@code purgePending} and a background job removes the
+ * rows and releases their content in batches on a small bounded pool. Both the flag and the job
+ * row are durable, so a job interrupted by a crash is picked up again later, and a failed one is
+ * retried with exponential backoff up to {@code max-attempts} times. Each
+ * row is purged by a conditional delete, so when jobs overlap (the same owner deleted twice, or
+ * the same job resumed on two nodes) every row's content is released by exactly one of them.
+ */
+@Slf4j
+@Service
+public class BulkDeleteService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final Duration MAX_RETRY_DELAY = Duration.ofDays(1);
+
+    private final FileRecordRepository fileRecordRepository;
+    private final DeleteJobRepository deleteJobRepository;
+    private final StorageEngine storageEngine;
+    private final FileVersionService fileVersionService;
+    private final FilenameIndex filenameIndex;
+    private final FileMetadataCache fileMetadataCache;
+    private final UsageService usageService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    // Jobs queued or running in this process, so the resume sweep doesn't submit them twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public BulkDeleteService(FileRecordRepository fileRecordRepository,
+                             DeleteJobRepository deleteJobRepository,
+                             StorageEngine storageEngine,
+                             FileVersionService fileVersionService,
+                             FilenameIndex filenameIndex,
+                             FileMetadataCache fileMetadataCache,
+                             UsageService usageService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${file.delete.workers:2}") int workerCount,
+                             @Value("${file.delete.queue-capacity:100}") int queueCapacity,
+                             @Value("${file.delete.max-attempts:5}") int maxAttempts,
+                             @Value("${file.delete.retry-backoff:1m}") Duration retryBackoff) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.deleteJobRepository = deleteJobRepository;
+        this.storageEngine = storageEngine;
+        this.fileVersionService = fileVersionService;
+        this.filenameIndex = filenameIndex;
+        this.fileMetadataCache = fileMetadataCache;
+        this.usageService = usageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "bulk-delete");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Soft-deletes all of the owner's live files in one statement.
+     *
+     * @return the number of files deleted
+     */
+    public int softDeleteAll(Long ownerId) {
+        OwnerUsage deleted = transactionTemplate.execute(status -> markAllDeleted(ownerId, false));
+        usageService.record(ownerId, -deleted.getBytes(), -deleted.getFiles());
+        filenameIndex.removeOwner(ownerId);
+        fileMetadataCache.invalidateOwner(ownerId);
+        return deleted.getFiles().intValue();
+    }
+
+    /**
+     * Hides all of the owner's live files now and schedules their physical removal.
+     */
+    public DeleteJob hardDeleteAll(Long ownerId, String requestedBy) {
+        OwnerUsage deleted = new OwnerUsage();
+        DeleteJob job = transactionTemplate.execute(status -> {
+            OwnerUsage marked = markAllDeleted(ownerId, true);
+            deleted.setBytes(marked.getBytes());
+            deleted.setFiles(marked.getFiles());
+            return deleteJobRepository.save(DeleteJob.builder()
+                    .id(UUID.randomUUID().toString())
+                    .ownerId(ownerId)
+                    .requestedBy(requestedBy)
+                    .status(DeleteJob.Status.PENDING)
+                    .total(marked.getFiles())
+                    .processed(0)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        });
+        usageService.record(ownerId, -deleted.getBytes(), -deleted.getFiles());
+        filenameIndex.removeOwner(ownerId);
+        fileMetadataCache.invalidateOwner(ownerId);
+        submit(job.getId());
+        return job;
+    }
+
+    /**
+     * Hides the owner's live files; to be called in a transaction.
+     *
+     * @return the size and number of files hidden
+     */
+    private OwnerUsage markAllDeleted(Long ownerId, boolean purge) {
+        // At the column's precision, so the stamp reads back equal
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        int count = fileRecordRepository.markAllDeleted(ownerId, purge, now);
+        // The rows just stamped with this deletedAt are exactly the ones the update hid
+        return new OwnerUsage(ownerId, fileRecordRepository.sumSizeDeletedAt(ownerId, now), (long) count);
+    }
+
+    /**
+     * Picks up jobs left PENDING or RUNNING by a previous process, any that were refused because
+     * the queue was full, and FAILED ones whose backoff has passed, whose files would otherwise
+     * stay flagged for good. A job that failed {@code max-attempts} times is left FAILED.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${file.delete.resume-interval:60000}", initialDelayString = "${file.delete.resume-interval:60000}")
+    public void resumePending() {
+        for (DeleteJob job : deleteJobRepository.findByStatusIn(List.of(DeleteJob.Status.PENDING, DeleteJob.Status.RUNNING))) {
+            submit(job.getId());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (DeleteJob job : deleteJobRepository.findByStatusAndAttemptsLessThan(DeleteJob.Status.FAILED, maxAttempts)) {
+            if (job.getNextAttemptAt() == null || !job.getNextAttemptAt().isAfter(now)) submit(job.getId());
+        }
+    }
+
+    private void submit(String jobId) {
+        if (!inFlight.add(jobId)) return;
+        try {
+            workers.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    inFlight.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Stays PENDING; resumePending() retries it later
+            inFlight.remove(jobId);
+            log.warn("Delete queue full, job {} deferred", jobId);
+        }
+    }
+
+    private void run(String jobId) {
+        DeleteJob job = deleteJobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() == DeleteJob.Status.COMPLETED) return;
+
+        job.setStatus(DeleteJob.Status.RUNNING);
+        job.setError(null);
+        job = deleteJobRepository.save(job);
+        try {
+            List<FileRecord> batch;
+            while (!(batch = fileRecordRepository.findByOwnerIdAndPurgePendingTrueOrderByIdAsc(job.getOwnerId(), PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+                // Rows go first: a crash before the releases below can only leak a reference
+                // (the storage sweeper corrects the count), never drop one that another record still needs. Only the
+                // rows this job removed are released; the rest went to an overlapping job.
+                Set<Long> purged = Set.copyOf(fileRecordRepository.purgeDeleted(batch.stream().map(FileRecord::getId).toList()));
+                for (FileRecord record : batch) {
+                    if (purged.contains(record.getId())) storageEngine.release(record.getStoragePath());
+                }
+                fileVersionService.deleteAll(purged);
+
+                job.setProcessed(Math.min(job.getTotal(), job.getProcessed() + purged.size()));
+                job = deleteJobRepository.save(job);
+            }
+
+            job.setStatus(DeleteJob.Status.COMPLETED);
+            job.setProcessed(job.getTotal());
+        } catch (IOException | RuntimeException e) {
+            int attempts = job.getAttempts() + 1;
+            if (attempts < maxAttempts) {
+                log.warn("Delete job {} failed (attempt {} of {}), retrying later", jobId, attempts, maxAttempts, e);
+            } else {
+                log.error("Delete job {} failed {} times, giving up; its files stay flagged for purge", jobId, attempts, e);
+            }
+            job.setStatus(DeleteJob.Status.FAILED);
+            job.setError(truncate(String.valueOf(e.getMessage())));
+            job.setAttempts(attempts);
+            job.setNextAttemptAt(LocalDateTime.now().plus(retryDelay(attempts)));
+        }
+        job.setFinishedAt(LocalDateTime.now());
+        deleteJobRepository.save(job);
+    }
+
+    // Doubles with every failure: backoff, 2 x backoff, 4 x backoff, ... up to a day
+    private Duration retryDelay(int attempts) {
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+
+    private static String truncate(String value) {
+        return value.length() <= MAX_ERROR_LENGTH ? value : value.substring(0, MAX_ERROR_LENGTH - 3) + "...";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
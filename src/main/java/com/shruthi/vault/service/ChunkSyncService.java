@@ -0,0 +1,172 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.SyncManifestRequest;
+import com.shruthi.vault.dto.SyncManifestResponse;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.FileVersion;
+import com.shruthi.vault.model.SyncChunk;
+import com.shruthi.vault.repository.SyncChunkRepository;
+import com.shruthi.vault.storage.MissingChunksException;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Delta sync for clients that chunk files themselves (content-defined, with the server's
+ * parameters): the client sends the file's chunk hashes, uploads only the chunks the store
+ * lacks, then commits the list. Chunks are shared across files and users, so re-syncing an
+ * edited file sends just the chunks around the edits.
+ * <p>
+ * Knowing a hash is not having the content, so a user may only name chunks they have shown
+ * they hold: those of the synced file's current content and kept versions, and those they
+ * uploaded themselves (recorded as {@link SyncChunk}s until committed or swept). Any other
+ * chunk has to be uploaded even if the store has it, so neither the manifest answer nor a
+ * commit tells anything about, or hands out, other users' content.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChunkSyncService {
+
+    private static final int HASH_BATCH_SIZE = 1000;
+
+    private final StorageEngine storageEngine;
+    private final FileMetadataCache fileMetadataCache;
+    private final FileVersionService fileVersionService;
+    private final UsageService usageService;
+    private final SyncChunkRepository syncChunkRepository;
+
+    @Value("${file.sync.max-chunk-size:8388608}")
+    private int maxChunkSize;
+
+    /**
+     * The chunks of the manifest the owner has to upload.
+     */
+    public SyncManifestResponse missing(Long ownerId, SyncManifestRequest request) throws IOException {
+        List<String> missing = List.copyOf(missingFor(ownerId, request.getFilename(), request.getChunks()));
+        return SyncManifestResponse.builder()
+                .totalChunks(request.getChunks().size())
+                .missing(missing)
+                .build();
+    }
+
+    /**
+     * Stores a chunk for the owner's next commit. Their uncommitted chunks count against their
+     * quota until then, so chunks never committed can't take more room than files could.
+     *
+     * @return false if the chunk was already stored
+     * @throws QuotaExceededException if the owner's usage and uncommitted chunks leave no room for it
+     */
+    public boolean putChunk(Long ownerId, String chunkHash, InputStream content, String contentType) throws IOException {
+        String hash = normalize(chunkHash);
+        byte[] buffer = content.readNBytes(maxChunkSize + 1);
+        if (buffer.length > maxChunkSize) throw new IllegalArgumentException("Chunk larger than " + maxChunkSize + " bytes");
+        try (UsageService.Reservation reservation = usageService.reserve(ownerId, 0)) {
+            reservation.hold(syncChunkRepository.sumSizes(ownerId) + buffer.length);
+            boolean stored = storageEngine.putChunk(hash, buffer, buffer.length, contentType);
+            // Checked against its hash either way, so the owner has shown they hold it
+            remember(ownerId, hash, buffer.length);
+            return stored;
+        }
+    }
+
+    /**
+     * Assembles the listed chunks into the file, as a new file or as the next version of the
+     * existing one.
+     *
+     * @throws com.shruthi.vault.storage.MissingChunksException if chunks still have to be uploaded
+     * @throws java.nio.file.FileAlreadyExistsException if the file exists and the request doesn't overwrite
+     * @throws QuotaExceededException if the file doesn't fit in the owner's quota
+     */
+    public FileRecord commit(Long ownerId, SyncManifestRequest request) throws IOException {
+        Set<String> missing = missingFor(ownerId, request.getFilename(), request.getChunks());
+        if (!missing.isEmpty()) throw new MissingChunksException(List.copyOf(missing));
+
+        FileRecord current = request.isOverwrite() ? fileMetadataCache.find(ownerId, request.getFilename()) : null;
+        long credit = current == null ? 0 : FileVersionService.sizeOf(current.getSize());
+        // The size is only known once assembled; chunks themselves belong to no one until then
+        StoredBlob blob = storageEngine.assemble(request.getChunks());
+        try (UsageService.Reservation reservation = usageService.reserve(ownerId, credit)) {
+            try {
+                reservation.hold(blob.size());
+            } catch (QuotaExceededException e) {
+                storageEngine.release(blob.storageKey());
+                throw e;
+            }
+            FileRecord record = fileVersionService.publish(ownerId, request.getFilename(), blob, request.getContentType(), request.isOverwrite());
+            // The chunks are part of the owner's file now, which is proof enough from here on
+            forget(ownerId, request.getChunks());
+            return record;
+        }
+    }
+
+    /**
+     * The chunks of the manifest the owner has to upload, in the order given, without repeats:
+     * all but those they have shown they hold and the store still has.
+     */
+    private Set<String> missingFor(Long ownerId, String filename, List<String> chunkHashes) throws IOException {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String hash : chunkHashes) requested.add(normalize(hash));
+
+        Set<String> held = new HashSet<>();
+        FileRecord current = filename == null ? null : fileMetadataCache.find(ownerId, filename);
+        if (current != null) {
+            List<String> keys = new ArrayList<>();
+            keys.add(current.getStoragePath());
+            for (FileVersion version : fileVersionService.history(current.getId())) keys.add(version.getStoragePath());
+            held.addAll(storageEngine.chunksOf(keys));
+            held.retainAll(requested);
+        }
+        List<String> unheld = requested.stream().filter(hash -> !held.contains(hash)).toList();
+        for (List<String> batch : batches(unheld)) held.addAll(syncChunkRepository.findHashes(ownerId, batch));
+
+        // Held chunks can still have been swept since
+        Set<String> gone = storageEngine.missingChunks(requested.stream().filter(held::contains).toList(),
+                current != null ? current.getStoragePath() : null);
+        Set<String> missing = new LinkedHashSet<>(requested);
+        missing.removeIf(hash -> held.contains(hash) && !gone.contains(hash));
+        return missing;
+    }
+
+    private void remember(Long ownerId, String hash, long size) {
+        LocalDateTime now = LocalDateTime.now();
+        if (syncChunkRepository.touch(ownerId, hash, now) > 0) return;
+        try {
+            syncChunkRepository.save(SyncChunk.builder().ownerId(ownerId).hash(hash).size(size).uploadedAt(now).build());
+        } catch (DataIntegrityViolationException e) {
+            // The same chunk uploaded twice at once; one row is enough
+        }
+    }
+
+    private void forget(Long ownerId, List<String> chunkHashes) {
+        List<String> hashes = chunkHashes.stream().map(ChunkSyncService::normalize).distinct().toList();
+        for (List<String> batch : batches(hashes)) syncChunkRepository.deleteHashes(ownerId, batch);
+    }
+
+    private static String normalize(String hash) {
+        String normalized = hash == null ? "" : hash.toLowerCase(Locale.ROOT);
+        if (normalized.length() != 64 || !normalized.chars().allMatch(HexFormat::isHexDigit)) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        return normalized;
+    }
+
+    private static List<List<String>> batches(List<String> hashes) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < hashes.size(); from += HASH_BATCH_SIZE) {
+            batches.add(hashes.subList(from, Math.min(from + HASH_BATCH_SIZE, hashes.size())));
+        }
+        return batches;
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+}
@@ -0,0 +1,209 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.UploadSessionResponse;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.UploadChunk;
+import com.shruthi.vault.model.UploadSession;
+import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.UploadChunkRepository;
+import com.shruthi.vault.repository.UploadSessionRepository;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: a session is opened with the final size, chunks are written
+ * directly into a partial file at their offsets (in any order, in parallel), and the
+ * FileRecord is only created once every chunk has arrived and the client commits.
+ * <p>
+ * Quota: a session is refused if its size doesn't fit, each chunk is counted against the quota
+ * (with the chunks before it) as it streams in and cut off once it crosses, and the size is
+ * checked once more on commit, as other uploads may have used the room since.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadChunkRepository uploadChunkRepository;
+    private final StorageEngine storageEngine;
+    private final FileVersionService fileVersionService;
+    private final FileMetadataCache fileMetadataCache;
+    private final UsageService usageService;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${file.upload.chunk-size:8388608}")
+    private int defaultChunkSize;
+
+    @Value("${file.upload.max-chunk-size:67108864}")
+    private int maxChunkSize;
+
+    @Value("${file.upload.min-chunk-size:65536}")
+    private int minChunkSize;
+
+    @Value("${file.upload.max-chunks:10000}")
+    private int maxChunks;
+
+    @Value("${file.upload.max-size:100GB}")
+    private DataSize maxUploadSize;
+
+    public int resolveChunkSize(Integer requested) {
+        if (requested == null || requested <= 0) return defaultChunkSize;
+        return Math.max(minChunkSize, Math.min(requested, maxChunkSize));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the file is larger than the upload limit or would take
+     *                                  more than the allowed number of chunks
+     * @throws QuotaExceededException if a file of that size doesn't fit in the owner's quota
+     */
+    public UploadSession init(User owner, String filename, long totalSize, int chunkSize, boolean overwrite) throws IOException {
+        if (totalSize > maxUploadSize.toBytes()) {
+            throw new IllegalArgumentException("File larger than " + maxUploadSize.toBytes() + " bytes");
+        }
+        if (chunkSize <= 0 || UploadSession.chunksFor(totalSize, chunkSize) > maxChunks) {
+            throw new IllegalArgumentException("File of " + totalSize + " bytes needs more than " + maxChunks
+                    + " chunks of " + chunkSize + " bytes");
+        }
+        // Checked before the partial file is sized to totalSize below
+        try (UsageService.Reservation reservation = usageService.reserve(owner.getId(), credit(owner.getId(), filename, overwrite))) {
+            reservation.hold(totalSize);
+        }
+
+        Path partialDir = Paths.get(uploadDir, ".partial");
+        if (!Files.exists(partialDir)) Files.createDirectories(partialDir);
+
+        String id = UUID.randomUUID().toString();
+        Path partPath = partialDir.resolve(id + ".part");
+        // Size the file up front: FileChannel.transferFrom never writes past the current end
+        try (RandomAccessFile part = new RandomAccessFile(partPath.toFile(), "rw")) {
+            part.setLength(totalSize);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .id(id)
+                .filename(filename)
+                .owner(owner)
+                .totalSize(totalSize)
+                .chunkSize(chunkSize)
+                .overwrite(overwrite)
+                .partPath(partPath.toString())
+                .createdAt(now)
+                .lastActivityAt(now)
+                .build();
+        return uploadSessionRepository.save(session);
+    }
+
+    /**
+     * Streams one chunk from the request body into the partial file at its offset.
+     * Re-sending a chunk that was already received simply overwrites the same bytes.
+     *
+     * @return the number of bytes written, which is less than expected if the body was short
+     * @throws QuotaExceededException if the chunk took the owner over quota; it is left incomplete
+     */
+    public long writeChunk(UploadSession session, int index, InputStream body) throws IOException {
+        // Before writing, so a slow chunk doesn't find its session expired underneath it
+        uploadSessionRepository.touch(session.getId(), LocalDateTime.now());
+        long offset = session.offsetOf(index);
+        long expected = session.lengthOf(index);
+
+        long written = 0;
+        Long ownerId = session.getOwner().getId();
+        try (UsageService.Reservation reservation = usageService.reserve(ownerId, credit(ownerId, session.getFilename(), session.isOverwrite()));
+             FileChannel channel = FileChannel.open(Paths.get(session.getPartPath()), StandardOpenOption.WRITE);
+             ReadableByteChannel source = Channels.newChannel(reservation.track(body))) {
+            reservation.hold(uploadChunkRepository.sumSizes(session.getId()));
+            while (written < expected) {
+                long n = channel.transferFrom(source, offset + written, expected - written);
+                if (n <= 0) break;
+                written += n;
+            }
+        }
+        if (written != expected) return written;
+
+        if (!uploadChunkRepository.existsBySessionIdAndChunkIndex(session.getId(), index)) {
+            try {
+                uploadChunkRepository.save(UploadChunk.builder()
+                        .sessionId(session.getId())
+                        .chunkIndex(index)
+                        .size(written)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Same chunk retried concurrently; the bytes are identical either way
+            }
+        }
+        return written;
+    }
+
+    public boolean isComplete(UploadSession session) {
+        return uploadChunkRepository.countBySessionId(session.getId()) == session.getTotalChunks();
+    }
+
+    /**
+     * Hands the assembled partial file to the storage engine and creates its FileRecord.
+     * The partial file already lives under the upload directory: when it is stored as is
+     * (encryption off, not compressed, smaller than a maximum chunk) storing it is a rename, or
+     * nothing at all when the content is already stored. Otherwise it is rewritten once into
+     * its stored form and deleted. An existing file of the same name gets the content as its next version. The session is
+     * closed either way, its partial file having been consumed.
+     *
+     * @throws java.nio.file.FileAlreadyExistsException if the file was created meanwhile and
+     *                                                   the session doesn't overwrite
+     * @throws QuotaExceededException if the file no longer fits in the quota; the session is kept
+     */
+    public FileRecord commit(UploadSession session, String contentType) throws IOException {
+        Long ownerId = session.getOwner().getId();
+        try (UsageService.Reservation reservation = usageService.reserve(ownerId, credit(ownerId, session.getFilename(), session.isOverwrite()))) {
+            reservation.hold(session.getTotalSize());
+            StoredBlob blob = storageEngine.importFile(Paths.get(session.getPartPath()), contentType);
+            try {
+                return fileVersionService.publish(ownerId, session.getFilename(), blob, contentType, session.isOverwrite());
+            } finally {
+                uploadChunkRepository.deleteBySessionId(session.getId());
+                uploadSessionRepository.delete(session);
+            }
+        }
+    }
+
+    // Overwriting frees what the current file takes
+    private long credit(Long ownerId, String filename, boolean overwrite) {
+        if (!overwrite) return 0;
+        FileRecord current = fileMetadataCache.find(ownerId, filename);
+        return current == null ? 0 : FileVersionService.sizeOf(current.getSize());
+    }
+
+    public void abort(UploadSession session) throws IOException {
+        Files.deleteIfExists(Paths.get(session.getPartPath()));
+        uploadChunkRepository.deleteBySessionId(session.getId());
+        uploadSessionRepository.delete(session);
+    }
+
+    public UploadSessionResponse toResponse(UploadSession session) {
+        return UploadSessionResponse.builder()
+                .sessionId(session.getId())
+                .filename(session.getFilename())
+                .totalSize(session.getTotalSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .receivedBytes(uploadChunkRepository.sumSizes(session.getId()))
+                .receivedChunks(uploadChunkRepository.findChunkIndexes(session.getId()))
+                .build();
+    }
+}
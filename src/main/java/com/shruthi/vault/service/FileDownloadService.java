@@ -0,0 +1,309 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.metrics.TransferMetrics;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.ratelimit.BandwidthShaper;
+import com.shruthi.vault.ratelimit.RateLimitFilter;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredContent;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes stored file content to the HTTP response with conditional GET (ETag / Last-Modified),
+ * single and multi-range requests, and zero-copy transfer for plaintext content: Tomcat's sendfile
+ * when the connector supports it, otherwise {@code FileChannel.transferTo} straight from the page
+ * cache. Content encrypted at rest is decrypted only for the segments a range covers, and large
+ * bodies that can't use sendfile are written with servlet non-blocking I/O. Content stored
+ * compressed is sent compressed to clients that accept gzip and decompressed on the fly otherwise.
+ * Small files downloaded often are served from memory by the storage engine's hot content cache.
+ * Downloads of users with a bandwidth limit skip sendfile, which the limit can't pace.
+ * Overlapping and adjacent ranges are merged and the number of ranges is capped, so one request
+ * can't have the same bytes read, decoded and sent many times over.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileDownloadService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Smaller bodies fit in the socket buffers, so a blocking write returns at once
+    private static final long ASYNC_THRESHOLD = 256 * 1024;
+
+    private final StorageEngine storageEngine;
+    private final TransferMetrics transferMetrics;
+
+    // Upper bound on a single non-blocking download, however slow the client
+    @Value("${file.download.async-timeout:30m}")
+    private Duration asyncTimeout;
+
+    // More ranges than this in one request are refused with 416
+    @Value("${file.download.max-ranges:16}")
+    private int maxRanges;
+
+    /**
+     * @return true if content is being sent (200 or 206), false for a 304, 412, 416 or error
+     */
+    public boolean serve(FileRecord record, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Content served from memory never touches the file system, so a missing or unreadable
+        // file only shows when it is opened
+        StoredContent content;
+        try {
+            content = storageEngine.open(record.getStoragePath());
+        } catch (NoSuchFileException | AccessDeniedException e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return false;
+        }
+        // Only records from before content hashing take their validators from the file
+        Path path = record.getContentHash() != null && record.getUploadTime() != null
+                ? null : storageEngine.resolve(record.getStoragePath());
+        boolean handedOff = false;
+        try {
+            handedOff = serve(record, path, content, request, response);
+        } finally {
+            if (!handedOff) content.close();
+        }
+        int status = response.getStatus();
+        return status == HttpServletResponse.SC_OK || status == HttpServletResponse.SC_PARTIAL_CONTENT;
+    }
+
+    /**
+     * @return true if the body is being written asynchronously, which then owns {@code content}
+     */
+    private boolean serve(FileRecord record, Path path, StoredContent decoded, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        // Compressed content goes out as stored to clients that accept its coding. Ranges always
+        // refer to the original bytes, so range requests get the decoded content.
+        String encoding = decoded.encoding();
+        boolean sendEncoded = encoding != null
+                && !StringUtils.hasText(request.getHeader(HttpHeaders.RANGE))
+                && accepts(request.getHeader(HttpHeaders.ACCEPT_ENCODING), encoding);
+        StoredContent content = sendEncoded ? decoded.encoded() : decoded;
+
+        long length = content.size();
+        String etag = etagFor(record, path, decoded.size());
+        if (sendEncoded) {
+            // Each representation needs its own strong validator
+            etag = etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+        }
+        long lastModified = lastModifiedFor(record, path);
+        if (encoding != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        // Private and always revalidated, so clients can reuse their copy after a 304
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+
+        // Sets ETag / Last-Modified and answers 304 (or 412 for If-Match) when it applies
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return false;
+        }
+
+        String contentType = StringUtils.hasText(record.getContentType())
+                ? record.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + record.getFilename() + "\"");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = coalesce(requestedRanges(request, etag, lastModified), length);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return false;
+        }
+
+        Long ownerId = record.getOwner() != null ? record.getOwner().getId() : null;
+        if (ranges.isEmpty()) {
+            transferMetrics.record(ownerId, TransferMetrics.Direction.OUT, length);
+            response.setContentType(contentType);
+            if (sendEncoded) response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            response.setContentLengthLong(length);
+            return transfer(content, 0, length, request, response);
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(length);
+            long end = ranges.get(0).getRangeEnd(length);
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            response.setContentLengthLong(end - start + 1);
+            transferMetrics.record(ownerId, TransferMetrics.Direction.OUT, end - start + 1);
+            return transfer(content, start, end - start + 1, request, response);
+        } else {
+            transferMetrics.record(ownerId, TransferMetrics.Direction.OUT,
+                    ranges.stream().mapToLong(r -> r.getRangeEnd(length) - r.getRangeStart(length) + 1).sum());
+            writeMultipart(content, length, contentType, ranges, response);
+            return false;
+        }
+    }
+
+    /**
+     * True if an Accept-Encoding header lists the coding (or {@code *}) with a non-zero quality.
+     */
+    static boolean accepts(String acceptEncoding, String encoding) {
+        if (!StringUtils.hasText(acceptEncoding)) return false;
+        boolean accepted = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim();
+            boolean match = coding.equalsIgnoreCase(encoding);
+            if (!match && !coding.equals("*")) continue;
+            boolean nonZero = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        nonZero = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        nonZero = false;
+                    }
+                }
+            }
+            // An explicit entry for the coding wins over the wildcard
+            if (match) return nonZero;
+            accepted = nonZero;
+        }
+        return accepted;
+    }
+
+    /**
+     * Ranges are ignored (full content is sent) when an If-Range validator no longer matches.
+     */
+    private List<HttpRange> requestedRanges(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (!StringUtils.hasText(rangeHeader)) return List.of();
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StringUtils.hasText(ifRange)) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(etag) || etag.startsWith("W/")) return List.of();
+            } else {
+                long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+                if (since == -1 || lastModified / 1000 > since / 1000) return List.of();
+            }
+        }
+        return HttpRange.parseRanges(rangeHeader);
+    }
+
+    /**
+     * The ranges sorted, with overlapping and adjacent ones merged into one.
+     *
+     * @throws IllegalArgumentException if there are more than {@code maxRanges} ranges or one
+     *                                  starts past the end of the file
+     */
+    private List<HttpRange> coalesce(List<HttpRange> ranges, long length) {
+        if (ranges.size() > maxRanges) throw new IllegalArgumentException("More than " + maxRanges + " ranges");
+        if (ranges.isEmpty()) return ranges;
+
+        List<long[]> bounds = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            if (start >= length) throw new IllegalArgumentException("Range starts past end of file");
+            bounds.add(new long[] {start, range.getRangeEnd(length)});
+        }
+        bounds.sort(Comparator.comparingLong(b -> b[0]));
+
+        List<HttpRange> merged = new ArrayList<>(bounds.size());
+        long[] current = bounds.get(0);
+        for (long[] next : bounds.subList(1, bounds.size())) {
+            if (next[0] <= current[1] + 1) {
+                current[1] = Math.max(current[1], next[1]);
+            } else {
+                merged.add(HttpRange.createByteRange(current[0], current[1]));
+                current = next;
+            }
+        }
+        merged.add(HttpRange.createByteRange(current[0], current[1]));
+        return merged;
+    }
+
+    private void writeMultipart(StoredContent content, long length, String contentType, List<HttpRange> ranges,
+                                HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + length + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            content.transferTo(start, end - start + 1, target);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Plaintext content goes out with sendfile when available. Anything else larger than the
+     * socket buffers is written with non-blocking I/O, so a slow client doesn't hold a request
+     * thread (platform or virtual) blocked in a socket write for the whole download.
+     *
+     * @return true if the body is being written asynchronously
+     */
+    private boolean transfer(StoredContent content, long start, long count, HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        BandwidthShaper shaper = request.getAttribute(RateLimitFilter.DOWNLOAD_SHAPER) instanceof BandwidthShaper s ? s : null;
+        Path plainFile = content.plainFile().orElse(null);
+        if (plainFile != null && count > 0 && shaper == null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the file with sendfile(2) once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, plainFile.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return false;
+        }
+
+        if (count > ASYNC_THRESHOLD && request.isAsyncSupported()) {
+            AsyncContentWriter.start(request.startAsync(), content, start, count, asyncTimeout.toMillis(), shaper);
+            return true;
+        }
+
+        content.transferTo(start, count, Channels.newChannel(response.getOutputStream()));
+        return false;
+    }
+
+    /**
+     * Strong ETag from the content hash; records stored before hashing get a weak one.
+     */
+    private static String etagFor(FileRecord record, Path path, long length) throws IOException {
+        if (record.getContentHash() != null) return "\"" + record.getContentHash() + "\"";
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(Files.getLastModifiedTime(path).toMillis()) + "\"";
+    }
+
+    private static long lastModifiedFor(FileRecord record, Path path) throws IOException {
+        if (record.getUploadTime() != null) {
+            return record.getUploadTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        return Files.getLastModifiedTime(path).toMillis();
+    }
+}
@@ -0,0 +1,114 @@
+package com.shruthi.vault.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shruthi.vault.dto.FileSummary;
+import com.shruthi.vault.repository.FileRecordRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.stream.Stream;
+
+/**
+ * Keyset-paginated file listing. Rows are streamed from the projection query straight into the
+ * JSON response, so memory stays flat whatever the page size, and each page continues from an
+ * opaque cursor of (uploadTime, id) instead of an OFFSET that the database would have to skip.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileListingService {
+
+    public enum Sort { NEWEST, OLDEST }
+
+    private final FileRecordRepository fileRecordRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Body writing {@code {"items":[...],"nextCursor":...}}; nextCursor is null on the last page.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed (checked before anything is written)
+     */
+    public StreamingResponseBody page(Long ownerId, Sort sort, String cursor, int size) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size);
+        return out -> writePage(ownerId, sort, after, limit, out);
+    }
+
+    private void writePage(Long ownerId, Sort sort, Cursor after, Pageable limit, OutputStream out) {
+        int size = limit.getPageSize();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        tx.executeWithoutResult(status -> {
+            try (Stream<FileSummary> rows = query(ownerId, sort, after, limit);
+                 JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("items");
+
+                FileSummary last = null;
+                int count = 0;
+                for (FileSummary row : (Iterable<FileSummary>) rows::iterator) {
+                    // Not objectMapper.writeValue, which flushes the stream after every row
+                    json.writeObject(row);
+                    last = row;
+                    count++;
+                }
+
+                json.writeEndArray();
+                json.writeStringField("nextCursor",
+                        count == size && last != null ? new Cursor(last.getUploadTime(), last.getId()).encode() : null);
+                json.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Stream<FileSummary> query(Long ownerId, Sort sort, Cursor after, Pageable limit) {
+        if (sort == Sort.OLDEST) {
+            if (after == null) return fileRecordRepository.streamOldest(ownerId, limit);
+            return after.time() == null
+                    ? fileRecordRepository.streamOldestAfterUndated(ownerId, after.id(), limit)
+                    : fileRecordRepository.streamOldestAfter(ownerId, after.time(), after.id(), limit);
+        }
+        if (after == null) return fileRecordRepository.streamNewest(ownerId, limit);
+        return after.time() == null
+                ? fileRecordRepository.streamNewestAfterUndated(ownerId, after.id(), limit)
+                : fileRecordRepository.streamNewestAfter(ownerId, after.time(), after.id(), limit);
+    }
+
+    // time is null for rows stored without an uploadTime
+    record Cursor(LocalDateTime time, Long id) {
+
+        String encode() {
+            String raw = (time == null ? "" : time.toString()) + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+         */
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                LocalDateTime time = sep == 0 ? null : LocalDateTime.parse(raw.substring(0, sep));
+                return new Cursor(time, Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
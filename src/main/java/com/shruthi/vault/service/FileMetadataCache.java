@@ -0,0 +1,126 @@
+package com.shruthi.vault.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.repository.FileRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-through cache of each owner's live file record by name, the lookup behind every
+ * download, delete and upload conflict check. Files that don't exist are cached too, so
+ * repeated checks for new names stay off the database as well. Bounded by an estimate of the
+ * memory its entries take, evicting by W-TinyLFU.
+ * <p>
+ * Every write to a record invalidates its entry once committed. A load racing with such a
+ * write could still put the old row back, so loads note the invalidation count before their
+ * query and drop what they loaded if it moved meanwhile. Queries don't run inside the cache's
+ * own compute, which would hold a map lock (and pin a virtual thread) for the round trip.
+ * Entries also expire after {@code ttl}, which bounds staleness from other nodes' writes.
+ * <p>
+ * Callers get their own copy of the record and may change it; the cached one never leaves here.
+ */
+@Service
+public class FileMetadataCache {
+
+    // Rough size of an entry besides its strings: key, record, boxed fields, cache node
+    private static final int ENTRY_OVERHEAD = 320;
+
+    private final FileRecordRepository fileRecordRepository;
+    private final boolean enabled;
+    private final Cache<Key, Optional<FileRecord>> records;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public FileMetadataCache(FileRecordRepository fileRecordRepository,
+                             MeterRegistry registry,
+                             @Value("${file.metadata-cache.enabled:true}") boolean enabled,
+                             @Value("${file.metadata-cache.max-size:32MB}") DataSize maxSize,
+                             @Value("${file.metadata-cache.ttl:5m}") Duration ttl) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.enabled = enabled;
+        this.records = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Key key, Optional<FileRecord> record) -> weigh(key, record))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, records, "file.metadata");
+    }
+
+    /**
+     * The owner's live (not deleted) file of that name, or null.
+     */
+    public FileRecord find(Long ownerId, String filename) {
+        if (!enabled) return fileRecordRepository.findTopByFilenameAndOwnerIdAndDeletedFalse(filename, ownerId);
+
+        Key key = new Key(ownerId, filename);
+        Optional<FileRecord> cached = records.getIfPresent(key);
+        if (cached != null) return cached.map(FileMetadataCache::copy).orElse(null);
+
+        long seen = invalidations.get();
+        FileRecord loaded = fileRecordRepository.findTopByFilenameAndOwnerIdAndDeletedFalse(filename, ownerId);
+        records.put(key, Optional.ofNullable(loaded).map(FileMetadataCache::copy));
+        // An invalidation since the query may have been this key's, for a write the query missed
+        if (invalidations.get() != seen) records.invalidate(key);
+        return loaded;
+    }
+
+    /**
+     * To be called after every committed write to the file's record.
+     */
+    public void invalidate(Long ownerId, String filename) {
+        invalidations.incrementAndGet();
+        records.invalidate(new Key(ownerId, filename));
+    }
+
+    /**
+     * For writes to all of an owner's records at once (delete-all).
+     */
+    public void invalidateOwner(Long ownerId) {
+        invalidations.incrementAndGet();
+        records.asMap().keySet().removeIf(key -> key.ownerId().equals(ownerId));
+    }
+
+    private static FileRecord copy(FileRecord record) {
+        return FileRecord.builder()
+                .id(record.getId())
+                .filename(record.getFilename())
+                .storagePath(record.getStoragePath())
+                .size(record.getSize())
+                .contentHash(record.getContentHash())
+                .contentType(record.getContentType())
+                .encoding(record.getEncoding())
+                .storedSize(record.getStoredSize())
+                .uploadTime(record.getUploadTime())
+                .version(record.getVersion())
+                .owner(record.getOwner())
+                .deleted(record.isDeleted())
+                .deletedAt(record.getDeletedAt())
+                .purgePending(record.isPurgePending())
+                .build();
+    }
+
+    private static int weigh(Key key, Optional<FileRecord> record) {
+        int chars = length(key.filename());
+        if (record.isPresent()) {
+            chars += length(record.get().getFilename()) + length(record.get().getStoragePath())
+                    + length(record.get().getContentHash()) + length(record.get().getContentType());
+        }
+        return ENTRY_OVERHEAD + 2 * chars;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private record Key(Long ownerId, String filename) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.storage.StripedLocks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks striped by (owner, filename). Writers of one file hold its lock from the check for an
+ * existing record to the insert or new version that follows, so concurrent uploads of the same
+ * name take turns instead of both creating it or both replacing the same version. Content is
+ * stored before the lock is taken; only the record update is serialized. Per instance: across
+ * nodes the unique (filename, owner) constraint still catches racing creates.
+ */
+@Component
+public class FileNameLocks {
+
+    private final StripedLocks locks;
+
+    public FileNameLocks(@Value("${file.upload.lock-stripes:1024}") int stripes) {
+        this.locks = new StripedLocks(stripes);
+    }
+
+    public ReentrantLock get(Long ownerId, String filename) {
+        return locks.get(new Key(ownerId, filename));
+    }
+
+    /**
+     * Locks for several files of one owner, to be taken in the order returned.
+     */
+    public List<ReentrantLock> getAll(Long ownerId, Collection<String> filenames) {
+        return locks.getAll(filenames.stream().map(filename -> new Key(ownerId, filename)).toList());
+    }
+
+    private record Key(Long ownerId, String filename) {
+    }
+}
@@ -0,0 +1,281 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.FileVersion;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.FileVersionRepository;
+import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Version history per file. Overwriting keeps the replaced content as a {@link FileVersion},
+ * which takes over the record's reference on it, and updates the record in place with the new
+ * content and the next version number. Large files are stored in content-defined chunks, so
+ * versions of the same file share every chunk an edit didn't touch.
+ * <p>
+ * Retention: at most {@code max-versions} old versions per file, none replaced longer than
+ * {@code max-age} ago. Versions past either limit are removed and their content released.
+ */
+@Slf4j
+@Service
+public class FileVersionService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private final FileVersionRepository fileVersionRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final UserRepository userRepository;
+    private final StorageEngine storageEngine;
+    private final FileNameLocks fileNameLocks;
+    private final FileMetadataCache fileMetadataCache;
+    private final UsageService usageService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxVersions;
+    private final Duration maxAge;
+
+    public FileVersionService(FileVersionRepository fileVersionRepository,
+                              FileRecordRepository fileRecordRepository,
+                              UserRepository userRepository,
+                              StorageEngine storageEngine,
+                              FileNameLocks fileNameLocks,
+                              FileMetadataCache fileMetadataCache,
+                              UsageService usageService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${file.versioning.max-versions:10}") int maxVersions,
+                              @Value("${file.versioning.max-age:90d}") Duration maxAge) {
+        this.fileVersionRepository = fileVersionRepository;
+        this.fileRecordRepository = fileRecordRepository;
+        this.userRepository = userRepository;
+        this.storageEngine = storageEngine;
+        this.fileNameLocks = fileNameLocks;
+        this.fileMetadataCache = fileMetadataCache;
+        this.usageService = usageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxVersions = Math.max(0, maxVersions);
+        this.maxAge = maxAge;
+    }
+
+    public static int versionOf(FileRecord record) {
+        return record.getVersion() == null ? 1 : record.getVersion();
+    }
+
+    public static long sizeOf(Long size) {
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * Records stored content as the owner's file: a new file, or with {@code overwrite} the next
+     * version of the existing one. Runs under the file's name lock, so concurrent writers of one
+     * name take turns. Takes over the blob's reference, and releases it if the name is taken.
+     * The owner's usage is charged once the record is written. A soft-deleted file of the same
+     * name still holds the (filename, owner) key, so it is purged first, ending its retention.
+     *
+     * @throws FileAlreadyExistsException if the file exists and {@code overwrite} is false
+     */
+    public FileRecord publish(Long ownerId, String filename, StoredBlob blob, String contentType, boolean overwrite) throws IOException {
+        ReentrantLock lock = fileNameLocks.get(ownerId, filename);
+        lock.lock();
+        try {
+            FileRecord current = fileRecordRepository.findTopByFilenameAndOwnerIdAndDeletedFalse(filename, ownerId);
+            if (current != null && overwrite) {
+                overwrite(current, blob, contentType);
+                return current;
+            }
+            if (current == null) {
+                FileRecord dead = fileRecordRepository.findTopByFilenameAndOwnerIdAndDeletedTrue(filename, ownerId);
+                if (dead != null) purgeDeleted(List.of(dead));
+                try {
+                    FileRecord created = fileRecordRepository.save(FileRecord.builder()
+                            .filename(filename)
+                            .storagePath(blob.storageKey())
+                            .size(blob.size())
+                            .contentHash(blob.contentHash())
+                            .contentType(contentType)
+                            .encoding(blob.encoding())
+                            .storedSize(blob.storedSize())
+                            .uploadTime(LocalDateTime.now())
+                            .version(1)
+                            .owner(userRepository.getReferenceById(ownerId))
+                            .deleted(false)
+                            .build());
+                    usageService.record(ownerId, blob.size(), 1);
+                    return created;
+                } catch (DataIntegrityViolationException e) {
+                    // Created by another node since the check
+                }
+            }
+        } finally {
+            fileMetadataCache.invalidate(ownerId, filename);
+            lock.unlock();
+        }
+        storageEngine.release(blob.storageKey());
+        throw new FileAlreadyExistsException(filename);
+    }
+
+    /**
+     * Purges soft-deleted files now, as the storage sweeper would once their retention is over,
+     * so new files can take their names. Only the rows this call removed have their content and
+     * history released, so a concurrent sweep or bulk delete job never releases them twice.
+     */
+    public void purgeDeleted(Collection<FileRecord> dead) throws IOException {
+        if (dead.isEmpty()) return;
+        List<Long> purged = fileRecordRepository.purgeDeleted(dead.stream().map(FileRecord::getId).toList());
+        for (FileRecord record : dead) {
+            if (purged.contains(record.getId())) storageEngine.release(record.getStoragePath());
+        }
+        deleteAll(purged);
+    }
+
+    /**
+     * Makes {@code blob} the record's current content, keeping what it replaces as a version.
+     */
+    public void overwrite(FileRecord current, StoredBlob blob, String contentType) throws IOException {
+        LocalDateTime now = LocalDateTime.now();
+        FileVersion previous = snapshot(current, now);
+        apply(current, blob, contentType, now);
+        transactionTemplate.executeWithoutResult(status -> {
+            fileVersionRepository.save(previous);
+            fileRecordRepository.save(current);
+        });
+        // Only the current content is charged; the replaced one is a version now
+        usageService.record(current.getOwner().getId(), current.getSize() - sizeOf(previous.getSize()), 0);
+        prune(current.getId());
+    }
+
+    /**
+     * The record's current content as a version, replaced at {@code replacedAt}. Not saved.
+     */
+    public FileVersion snapshot(FileRecord current, LocalDateTime replacedAt) {
+        return FileVersion.builder()
+                .fileRecordId(current.getId())
+                .version(versionOf(current))
+                .storagePath(current.getStoragePath())
+                .size(current.getSize())
+                .contentHash(current.getContentHash())
+                .contentType(current.getContentType())
+                .encoding(current.getEncoding())
+                .storedSize(current.getStoredSize())
+                .uploadTime(current.getUploadTime())
+                .replacedAt(replacedAt)
+                .build();
+    }
+
+    /**
+     * Points the record at new content as its next version. Not saved.
+     */
+    public void apply(FileRecord record, StoredBlob blob, String contentType, LocalDateTime uploadTime) {
+        record.setVersion(versionOf(record) + 1);
+        record.setStoragePath(blob.storageKey());
+        record.setSize(blob.size());
+        record.setContentHash(blob.contentHash());
+        record.setContentType(contentType);
+        record.setEncoding(blob.encoding());
+        record.setStoredSize(blob.storedSize());
+        record.setUploadTime(uploadTime);
+    }
+
+    /**
+     * Old versions of the file, newest first.
+     */
+    public List<FileVersion> history(Long fileRecordId) {
+        return fileVersionRepository.findByFileRecordIdOrderByVersionDesc(fileRecordId);
+    }
+
+    public Optional<FileVersion> find(Long fileRecordId, int version) {
+        return fileVersionRepository.findByFileRecordIdAndVersion(fileRecordId, version);
+    }
+
+    /**
+     * A detached record describing an old version, for the download path.
+     */
+    public FileRecord asRecord(FileRecord current, FileVersion version) {
+        return FileRecord.builder()
+                .id(current.getId())
+                .filename(current.getFilename())
+                .storagePath(version.getStoragePath())
+                .size(version.getSize())
+                .contentHash(version.getContentHash())
+                .contentType(version.getContentType())
+                .encoding(version.getEncoding())
+                .storedSize(version.getStoredSize())
+                .uploadTime(version.getUploadTime())
+                .version(version.getVersion())
+                .owner(current.getOwner())
+                .build();
+    }
+
+    /**
+     * Applies the retention policy to one file's history.
+     */
+    public void prune(Long fileRecordId) {
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        List<FileVersion> versions = history(fileRecordId);
+        List<FileVersion> expired = new ArrayList<>();
+        for (int i = 0; i < versions.size(); i++) {
+            FileVersion version = versions.get(i);
+            if (i >= maxVersions || (version.getReplacedAt() != null && version.getReplacedAt().isBefore(cutoff))) {
+                expired.add(version);
+            }
+        }
+        remove(expired);
+    }
+
+    /**
+     * Removes the whole history of files that are being hard-deleted.
+     *
+     * @return disk space freed
+     */
+    public long deleteAll(Collection<Long> fileRecordIds) {
+        if (fileRecordIds.isEmpty()) return 0;
+        return remove(fileVersionRepository.findByFileRecordIdIn(fileRecordIds));
+    }
+
+    /**
+     * Drops versions that aged out since their file was last written.
+     */
+    @Scheduled(fixedDelayString = "${file.versioning.sweep-interval:3600000}", initialDelayString = "${file.versioning.sweep-interval:3600000}")
+    public void sweepExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        List<FileVersion> batch;
+        int removed = 0;
+        while (!(batch = fileVersionRepository.findByReplacedAtBefore(cutoff, PageRequest.of(0, SWEEP_BATCH_SIZE))).isEmpty()) {
+            remove(batch);
+            removed += batch.size();
+        }
+        if (removed > 0) log.info("Removed {} expired file versions", removed);
+    }
+
+    private long remove(List<FileVersion> versions) {
+        if (versions.isEmpty()) return 0;
+        // Rows first, as with bulk deletes: a crash in between only leaks a reference
+        fileVersionRepository.deleteAllByIdInBatch(versions.stream().map(FileVersion::getId).toList());
+        long freed = 0;
+        for (FileVersion version : versions) {
+            try {
+                freed += storageEngine.release(version.getStoragePath());
+            } catch (IOException e) {
+                log.warn("Could not release {}", version.getStoragePath(), e);
+            }
+        }
+        return freed;
+    }
+}
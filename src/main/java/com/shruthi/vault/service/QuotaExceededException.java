@@ -0,0 +1,20 @@
+package com.shruthi.vault.service;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * An upload would take its owner past their storage quota. An IOException so it can abort
+ * content streaming into storage from inside the stream.
+ */
+@Getter
+public class QuotaExceededException extends IOException {
+
+    private final long quota;
+
+    public QuotaExceededException(long quota) {
+        super("Storage quota of " + quota + " bytes exceeded");
+        this.quota = quota;
+    }
+}
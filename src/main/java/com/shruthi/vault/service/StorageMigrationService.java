@@ -0,0 +1,177 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.MigrationReport;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.FileVersion;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.FileVersionRepository;
+import com.shruthi.vault.storage.IoThrottle;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online migration into the sharded blob store. Blob files written under an earlier shard
+ * layout are moved to where the current one puts them, and files of records and versions that
+ * still point at a plain file in the upload directory are copied into the blob store. Each
+ * record is switched over with a conditional update, so one overwritten or deleted meanwhile
+ * is left alone and the copy released; nothing is locked for longer than one file. The old
+ * plain files are left for the {@link StorageSweeper}, so a download that resolved the old
+ * path just before the switch still finds it.
+ */
+@Slf4j
+@Service
+public class StorageMigrationService {
+
+    private static final int BATCH_SIZE = 200;
+
+    private final FileRecordRepository fileRecordRepository;
+    private final FileVersionRepository fileVersionRepository;
+    private final StorageEngine storageEngine;
+    private final FileMetadataCache fileMetadataCache;
+    private final ThreadPoolExecutor worker;
+    private final boolean onStartup;
+    private final double maxOpsPerSecond;
+
+    private volatile MigrationReport lastReport;
+
+    public StorageMigrationService(FileRecordRepository fileRecordRepository,
+                                   FileVersionRepository fileVersionRepository,
+                                   StorageEngine storageEngine,
+                                   FileMetadataCache fileMetadataCache,
+                                   @Value("${storage.migration.on-startup:false}") boolean onStartup,
+                                   @Value("${storage.migration.max-ops-per-second:500}") double maxOpsPerSecond) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileVersionRepository = fileVersionRepository;
+        this.storageEngine = storageEngine;
+        this.fileMetadataCache = fileMetadataCache;
+        this.onStartup = onStartup;
+        this.maxOpsPerSecond = maxOpsPerSecond;
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "storage-migration");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (onStartup) trigger();
+    }
+
+    /**
+     * Starts a migration in the background.
+     *
+     * @return false if one is already running
+     */
+    public boolean trigger() {
+        try {
+            worker.execute(this::migrate);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public Optional<MigrationReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    private void migrate() {
+        IoThrottle throttle = new IoThrottle(maxOpsPerSecond);
+        MigrationReport report = MigrationReport.builder().startedAt(LocalDateTime.now()).build();
+        lastReport = report;
+        try {
+            report.setRelocatedBlobs(storageEngine.relocate(throttle));
+            migrateRecords(report, throttle);
+            migrateVersions(report, throttle);
+        } catch (IOException | RuntimeException e) {
+            log.error("Storage migration failed", e);
+            report.setError(e.getMessage());
+        }
+        report.setFinishedAt(LocalDateTime.now());
+        log.info("Storage migration: {}", report);
+    }
+
+    private void migrateRecords(MigrationReport report, IoThrottle throttle) throws IOException {
+        long afterId = 0;
+        List<FileRecord> batch;
+        while (!(batch = fileRecordRepository.findPlainStored(afterId, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            for (FileRecord record : batch) {
+                throttle.acquire();
+                StoredBlob blob = copy(record.getStoragePath(), record.getContentType(), report);
+                if (blob == null) continue;
+                if (fileRecordRepository.moveContent(record.getId(), record.getStoragePath(), blob.storageKey(),
+                        blob.contentHash(), blob.encoding(), blob.storedSize()) > 0) {
+                    fileMetadataCache.invalidate(record.getOwner().getId(), record.getFilename());
+                    report.setMigratedRecords(report.getMigratedRecords() + 1);
+                } else {
+                    storageEngine.release(blob.storageKey());
+                    report.setSkipped(report.getSkipped() + 1);
+                }
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private void migrateVersions(MigrationReport report, IoThrottle throttle) throws IOException {
+        long afterId = 0;
+        List<FileVersion> batch;
+        while (!(batch = fileVersionRepository.findPlainStored(afterId, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            for (FileVersion version : batch) {
+                throttle.acquire();
+                StoredBlob blob = copy(version.getStoragePath(), version.getContentType(), report);
+                if (blob == null) continue;
+                if (fileVersionRepository.moveContent(version.getId(), version.getStoragePath(), blob.storageKey(),
+                        blob.contentHash(), blob.encoding(), blob.storedSize()) > 0) {
+                    report.setMigratedVersions(report.getMigratedVersions() + 1);
+                } else {
+                    storageEngine.release(blob.storageKey());
+                    report.setSkipped(report.getSkipped() + 1);
+                }
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    /**
+     * Stores a copy of the plain file, leaving the file itself in place.
+     *
+     * @return null if the file can't be read
+     */
+    private StoredBlob copy(String storagePath, String contentType, MigrationReport report) {
+        Path source = Paths.get(storagePath);
+        try (InputStream in = Files.newInputStream(source)) {
+            return storageEngine.store(in, contentType);
+        } catch (IOException e) {
+            log.warn("Could not migrate {}", storagePath, e);
+            report.setFailed(report.getFailed() + 1);
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -0,0 +1,341 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.ReferenceCount;
+import com.shruthi.vault.dto.SweepReport;
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.UploadSession;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.FileVersionRepository;
+import com.shruthi.vault.repository.SyncChunkRepository;
+import com.shruthi.vault.repository.UploadSessionRepository;
+import com.shruthi.vault.storage.IoThrottle;
+import com.shruthi.vault.storage.OrphanSweep;
+import com.shruthi.vault.storage.StorageEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background reconciliation of the database against the upload directory. Each run purges
+ * soft-deleted files past the retention window, expires abandoned chunked upload sessions and
+ * uncommitted sync chunk uploads, corrects the reference counts of one sixteenth of the stored
+ * content, removes partial, temp and unreferenced files, and reports records whose content has
+ * gone missing. Tables are read in pages and directories streamed, so a run's memory doesn't
+ * grow with the store, and every file or row operation goes through one {@link IoThrottle} so
+ * the sweep stays in the background. Runs on its own thread, one at a time.
+ */
+@Slf4j
+@Service
+public class StorageSweeper {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_DANGLING_LOGGED = 20;
+    // Reference counts are reconciled for one of this many hash ranges per run
+    private static final int RECONCILE_RANGES = 16;
+
+    private final FileRecordRepository fileRecordRepository;
+    private final FileVersionRepository fileVersionRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final SyncChunkRepository syncChunkRepository;
+    private final FileVersionService fileVersionService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final StorageEngine storageEngine;
+    private final ThreadPoolExecutor worker;
+
+    private final boolean enabled;
+    private final Duration deletedRetention;
+    private final Duration gracePeriod;
+    private final Duration sessionTtl;
+    private final double maxOpsPerSecond;
+    private final Path uploadRoot;
+
+    private final MeterRegistry registry;
+    private final Timer runTimer;
+    private final Counter reclaimedBytes;
+    private final Counter correctedRefCounts;
+    private final AtomicInteger danglingRecords = new AtomicInteger();
+
+    private volatile SweepReport lastReport;
+    private int reconcileRange;
+
+    public StorageSweeper(FileRecordRepository fileRecordRepository,
+                          FileVersionRepository fileVersionRepository,
+                          UploadSessionRepository uploadSessionRepository,
+                          SyncChunkRepository syncChunkRepository,
+                          FileVersionService fileVersionService,
+                          ChunkedUploadService chunkedUploadService,
+                          StorageEngine storageEngine,
+                          MeterRegistry registry,
+                          @Value("${storage.sweep.enabled:true}") boolean enabled,
+                          @Value("${storage.sweep.deleted-retention:30d}") Duration deletedRetention,
+                          @Value("${storage.sweep.grace-period:6h}") Duration gracePeriod,
+                          @Value("${storage.sweep.upload-session-ttl:24h}") Duration sessionTtl,
+                          @Value("${storage.sweep.max-ops-per-second:500}") double maxOpsPerSecond,
+                          @Value("${file.upload-dir}") String uploadDir) {
+        this.fileRecordRepository = fileRecordRepository;
+        this.fileVersionRepository = fileVersionRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.syncChunkRepository = syncChunkRepository;
+        this.fileVersionService = fileVersionService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.storageEngine = storageEngine;
+        this.enabled = enabled;
+        this.deletedRetention = deletedRetention;
+        this.gracePeriod = gracePeriod;
+        this.sessionTtl = sessionTtl;
+        this.maxOpsPerSecond = maxOpsPerSecond;
+        this.uploadRoot = Paths.get(uploadDir);
+        // One run at a time; a request while one is running is turned away, not queued
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "storage-sweeper");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        this.registry = registry;
+        this.runTimer = Timer.builder("vault.gc.run").register(registry);
+        this.reclaimedBytes = Counter.builder("vault.gc.reclaimed.bytes").baseUnit("bytes")
+                .description("Disk space freed by the storage sweeper").register(registry);
+        this.correctedRefCounts = Counter.builder("vault.gc.refcounts.corrected")
+                .description("Blob and manifest reference counts the storage sweeper found wrong").register(registry);
+        registry.gauge("vault.gc.dangling.records", danglingRecords);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.sweep.interval:3600000}", initialDelayString = "${storage.sweep.interval:3600000}")
+    public void scheduledSweep() {
+        if (enabled) trigger();
+    }
+
+    /**
+     * Starts a run in the background.
+     *
+     * @return false if one is already running
+     */
+    public boolean trigger() {
+        try {
+            worker.execute(this::sweep);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public Optional<SweepReport> getLastReport() {
+        return Optional.ofNullable(lastReport);
+    }
+
+    private void sweep() {
+        IoThrottle throttle = new IoThrottle(maxOpsPerSecond);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime graceCutoff = now.minus(gracePeriod);
+        SweepReport report = SweepReport.builder().startedAt(now).build();
+
+        Timer.Sample sample = Timer.start();
+        try {
+            purgeDeleted(now, now.minus(deletedRetention), report, throttle);
+            expireSessions(now.minus(sessionTtl), report, throttle);
+            removePartialFiles(graceCutoff, report, throttle);
+            removeLegacyFiles(graceCutoff, report, throttle);
+            // Chunks uploaded but never committed no longer count as held; their blobs go below
+            throttle.acquire();
+            report.setExpiredSyncChunks(syncChunkRepository.deleteUploadedBefore(graceCutoff));
+
+            // Before reclaiming, so content whose count was left too high goes in this same run
+            String hashPrefix = Character.toString(Character.forDigit(reconcileRange, 16));
+            reconcileRange = (reconcileRange + 1) % RECONCILE_RANGES;
+            report.setCorrectedRefCounts(storageEngine.reconcileReferences(hashPrefix, this::countReferences, throttle));
+
+            OrphanSweep orphans = storageEngine.reclaimOrphans(graceCutoff, throttle);
+            report.setUnreferencedManifests(orphans.manifests());
+            report.setUnreferencedBlobs(orphans.blobs());
+            report.setStrayFiles(orphans.strayFiles());
+            report.setTempFiles(orphans.tempFiles());
+            report.setReclaimedBytes(report.getReclaimedBytes() + orphans.bytes());
+
+            findDangling(report, throttle);
+            danglingRecords.set(report.getDanglingRecords());
+        } catch (IOException | RuntimeException e) {
+            log.error("Storage sweep failed", e);
+            report.setError(e.getMessage());
+        } finally {
+            sample.stop(runTimer);
+        }
+        report.setFinishedAt(LocalDateTime.now());
+
+        reclaimedBytes.increment(report.getReclaimedBytes());
+        correctedRefCounts.increment(report.getCorrectedRefCounts());
+        if (report.getCorrectedRefCounts() > 0) log.warn("Corrected {} reference counts", report.getCorrectedRefCounts());
+        countRemoved("records", report.getPurgedRecords());
+        countRemoved("sessions", report.getExpiredSessions());
+        countRemoved("sync_chunks", report.getExpiredSyncChunks());
+        countRemoved("partial_files", report.getPartialFiles());
+        countRemoved("legacy_files", report.getLegacyFiles());
+        countRemoved("manifests", report.getUnreferencedManifests());
+        countRemoved("blobs", report.getUnreferencedBlobs());
+        countRemoved("stray_files", report.getStrayFiles());
+        countRemoved("temp_files", report.getTempFiles());
+        lastReport = report;
+        log.info("Storage sweep: {}", report);
+    }
+
+    /**
+     * File records and versions pointing at each of the keys.
+     */
+    private Map<String, Long> countReferences(Collection<String> storageKeys) {
+        Map<String, Long> references = new HashMap<>();
+        for (ReferenceCount count : fileRecordRepository.countByStoragePaths(storageKeys)) {
+            references.merge(count.getStorageKey(), count.getReferences(), Long::sum);
+        }
+        for (ReferenceCount count : fileVersionRepository.countByStoragePaths(storageKeys)) {
+            references.merge(count.getStorageKey(), count.getReferences(), Long::sum);
+        }
+        return references;
+    }
+
+    private void countRemoved(String kind, int count) {
+        if (count > 0) registry.counter("vault.gc.removed", "kind", kind).increment(count);
+    }
+
+    private void purgeDeleted(LocalDateTime now, LocalDateTime cutoff, SweepReport report, IoThrottle throttle) {
+        fileRecordRepository.stampDeletedAt(now);
+
+        List<FileRecord> batch;
+        while (!(batch = fileRecordRepository.findByDeletedTrueAndPurgePendingFalseAndDeletedAtBeforeOrderByIdAsc(cutoff, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            // Rows first, as with bulk deletes: a crash before the releases only leaks references,
+            // which reference count reconciliation corrects.
+            // Rows another node's sweep purged first are its to release.
+            Set<Long> purged = Set.copyOf(fileRecordRepository.purgeDeleted(batch.stream().map(FileRecord::getId).toList()));
+            long freed = 0;
+            for (FileRecord record : batch) {
+                if (!purged.contains(record.getId())) continue;
+                throttle.acquire();
+                try {
+                    freed += storageEngine.release(record.getStoragePath());
+                } catch (IOException e) {
+                    log.warn("Could not release {}", record.getStoragePath(), e);
+                }
+            }
+            freed += fileVersionService.deleteAll(purged);
+            report.setPurgedRecords(report.getPurgedRecords() + purged.size());
+            report.setReclaimedBytes(report.getReclaimedBytes() + freed);
+        }
+    }
+
+    private void expireSessions(LocalDateTime cutoff, SweepReport report, IoThrottle throttle) throws IOException {
+        List<UploadSession> batch;
+        while (!(batch = uploadSessionRepository.findIdleSince(cutoff, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            for (UploadSession session : batch) {
+                throttle.acquire();
+                long size = sizeOf(Paths.get(session.getPartPath()));
+                chunkedUploadService.abort(session);
+                report.setExpiredSessions(report.getExpiredSessions() + 1);
+                report.setReclaimedBytes(report.getReclaimedBytes() + size);
+            }
+        }
+    }
+
+    /**
+     * Partial files whose session is gone (aborted or expired while the file couldn't be deleted).
+     */
+    private void removePartialFiles(LocalDateTime cutoff, SweepReport report, IoThrottle throttle) throws IOException {
+        Path partialDir = uploadRoot.resolve(".partial");
+        if (!Files.isDirectory(partialDir)) return;
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(partialDir, "*.part")) {
+            for (Path part : parts) {
+                throttle.acquire();
+                String sessionId = part.getFileName().toString().replaceFirst("\\.part$", "");
+                if (isOlderThan(part, cutoff) && !uploadSessionRepository.existsById(sessionId)) {
+                    report.setReclaimedBytes(report.getReclaimedBytes() + delete(part));
+                    report.setPartialFiles(report.getPartialFiles() + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Files written directly under the upload directory before the blob store, which no record or
+     * version points at any more (left behind by an overwrite or delete that didn't finish).
+     */
+    private void removeLegacyFiles(LocalDateTime cutoff, SweepReport report, IoThrottle throttle) throws IOException {
+        if (!Files.isDirectory(uploadRoot)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadRoot, Files::isRegularFile)) {
+            for (Path file : files) {
+                throttle.acquire();
+                if (!isOlderThan(file, cutoff)) continue;
+                // Matched on the name only, so a changed upload-dir setting can't make live files look orphaned
+                String suffix = File.separator + file.getFileName();
+                if (!fileRecordRepository.existsByStoragePathEndingWith(suffix)
+                        && !fileVersionRepository.existsByStoragePathEndingWith(suffix)) {
+                    report.setReclaimedBytes(report.getReclaimedBytes() + delete(file));
+                    report.setLegacyFiles(report.getLegacyFiles() + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records whose content is no longer in storage. They can't be repaired, only reported.
+     */
+    private void findDangling(SweepReport report, IoThrottle throttle) throws IOException {
+        long afterId = 0;
+        List<FileRecord> batch;
+        while (!(batch = fileRecordRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, BATCH_SIZE))).isEmpty()) {
+            List<String> keys = batch.stream().map(FileRecord::getStoragePath).filter(Objects::nonNull).toList();
+            Set<String> missing = storageEngine.findMissing(keys, throttle);
+            for (FileRecord record : batch) {
+                if (record.getStoragePath() != null && !missing.contains(record.getStoragePath())) continue;
+                if (report.getDanglingRecords() < MAX_DANGLING_LOGGED) {
+                    log.warn("File record {} ({}) points at missing content {}", record.getId(), record.getFilename(), record.getStoragePath());
+                }
+                report.setDanglingRecords(report.getDanglingRecords() + 1);
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    private static boolean isOlderThan(Path file, LocalDateTime cutoff) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long delete(Path file) throws IOException {
+        long size = sizeOf(file);
+        return Files.deleteIfExists(file) ? size : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
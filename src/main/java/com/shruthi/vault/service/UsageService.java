@@ -0,0 +1,274 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.dto.OwnerUsage;
+import com.shruthi.vault.dto.UsageReport;
+import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Storage used per user (size and count of their live files) and quota enforcement. Writers
+ * record each change after committing it, into per-user {@link LongAdder}s that spread
+ * concurrent updates over cells instead of contending on one counter, let alone the user row.
+ * Every {@code flush-interval} the sums are added to the user rows in place, one UPDATE per
+ * changed user, all in one transaction. A crash loses at most one interval of changes, which
+ * {@link #recount} repairs; so does the first start after upgrading.
+ * <p>
+ * An upload holds a {@link Reservation} from before its first byte until its record is
+ * written. Its bytes are counted against the quota as they are read, together with the owner's
+ * recorded usage and every other upload of theirs in flight, and the upload is aborted with a
+ * {@link QuotaExceededException} as soon as they cross it. Usage is kept in memory per node:
+ * with several nodes, each sees only its own uploads in flight and the others' changes from
+ * the last time it loaded the user.
+ */
+@Slf4j
+@Service
+public class UsageService {
+
+    private final UserRepository userRepository;
+    private final FileRecordRepository fileRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long defaultQuota;
+
+    // One per user who uploaded or deleted since the start; never removed, so a change is never
+    // recorded into an account a flush has just dropped
+    private final Map<Long, Account> accounts = new ConcurrentHashMap<>();
+
+    public UsageService(UserRepository userRepository,
+                        FileRecordRepository fileRecordRepository,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${usage.default-quota:10GB}") DataSize defaultQuota) {
+        this.userRepository = userRepository;
+        this.fileRecordRepository = fileRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultQuota = Math.max(0, defaultQuota.toBytes());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void countOnStartup() {
+        if (userRepository.existsByUsedBytesIsNull()) {
+            log.info("Users without a usage count found, recounting");
+            recount();
+        }
+    }
+
+    /**
+     * Charges the owner for a committed change to their live files (negative for deletes).
+     */
+    public void record(Long ownerId, long bytes, long files) {
+        if (bytes == 0 && files == 0) return;
+        Account account = account(ownerId);
+        account.bytes.add(bytes);
+        account.files.add(files);
+    }
+
+    /**
+     * Holds room for an upload until it is recorded; to be closed once it is (or failed).
+     *
+     * @param credit what the upload replaces: the size of the file it overwrites, if any
+     */
+    public Reservation reserve(Long ownerId, long credit) {
+        return new Reservation(account(ownerId), credit);
+    }
+
+    /**
+     * The user's usage including changes not flushed yet; one row, whatever the number of files.
+     */
+    public UsageReport report(User user) {
+        Account account = accounts.get(user.getId());
+        return UsageReport.builder()
+                .username(user.getUsername())
+                .usedBytes(valueOf(user.getUsedBytes()) + (account == null ? 0 : account.bytes.sum()))
+                .fileCount(valueOf(user.getFileCount()) + (account == null ? 0 : account.files.sum()))
+                .quotaBytes(quotaOf(user))
+                .defaultQuota(user.getQuotaBytes() == null)
+                .build();
+    }
+
+    /**
+     * @param quota bytes, 0 for no limit, or null for the default
+     */
+    public void setQuota(User user, Long quota) {
+        transactionTemplate.executeWithoutResult(status -> userRepository.setQuota(user.getId(), quota));
+        user.setQuotaBytes(quota);
+        Account account = accounts.get(user.getId());
+        if (account != null) account.quota = quotaOf(user);
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flush-interval:1000}")
+    public synchronized void flush() {
+        Map<Long, Delta> drained = new HashMap<>();
+        accounts.forEach((ownerId, account) -> {
+            long bytes = account.bytes.sumThenReset();
+            long files = account.files.sumThenReset();
+            if (bytes == 0 && files == 0) return;
+            account.flushedBytes += bytes;
+            account.flushedFiles += files;
+            drained.put(ownerId, new Delta(bytes, files));
+        });
+        if (drained.isEmpty()) return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    drained.forEach((ownerId, delta) -> userRepository.addUsage(ownerId, delta.bytes(), delta.files())));
+        } catch (RuntimeException e) {
+            log.warn("Could not flush usage of {} users, retrying", drained.size(), e);
+            drained.forEach((ownerId, delta) -> {
+                Account account = accounts.get(ownerId);
+                account.flushedBytes -= delta.bytes();
+                account.flushedFiles -= delta.files();
+                account.bytes.add(delta.bytes());
+                account.files.add(delta.files());
+            });
+        }
+    }
+
+    /**
+     * Recomputes every user's usage from their live files. Changes committed while it runs may
+     * be counted twice or not at all, so run it while uploads and deletes are quiet.
+     */
+    public synchronized void recount() {
+        flush();
+        List<OwnerUsage> totals = transactionTemplate.execute(status -> {
+            List<OwnerUsage> live = fileRecordRepository.sumLiveByOwner();
+            userRepository.clearUsage();
+            for (OwnerUsage usage : live) {
+                userRepository.setUsage(usage.getOwnerId(), usage.getBytes(), usage.getFiles());
+            }
+            return live;
+        });
+
+        Map<Long, OwnerUsage> byOwner = new HashMap<>();
+        for (OwnerUsage usage : totals) byOwner.put(usage.getOwnerId(), usage);
+        accounts.forEach((ownerId, account) -> {
+            OwnerUsage usage = byOwner.get(ownerId);
+            account.flushedBytes = usage == null ? 0 : usage.getBytes();
+            account.flushedFiles = usage == null ? 0 : usage.getFiles();
+        });
+        log.info("Recounted storage usage: {} users with files", totals.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private Account account(Long ownerId) {
+        Account account = accounts.get(ownerId);
+        if (account != null) return account;
+
+        // Loaded outside the map, so the query doesn't hold a bin lock
+        User user = userRepository.findById(ownerId).orElseThrow();
+        Account loaded = new Account(valueOf(user.getUsedBytes()), valueOf(user.getFileCount()), quotaOf(user));
+        Account raced = accounts.putIfAbsent(ownerId, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    private long quotaOf(User user) {
+        return user.getQuotaBytes() == null ? defaultQuota : Math.max(0, user.getQuotaBytes());
+    }
+
+    private static long valueOf(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    private record Delta(long bytes, long files) {
+    }
+
+    private static final class Account {
+
+        // Recorded, not flushed yet
+        final LongAdder bytes = new LongAdder();
+        final LongAdder files = new LongAdder();
+        // Held by open reservations
+        final LongAdder inFlight = new LongAdder();
+        // As of the last flush (or load)
+        volatile long flushedBytes;
+        volatile long flushedFiles;
+        // 0: no limit
+        volatile long quota;
+
+        Account(long flushedBytes, long flushedFiles, long quota) {
+            this.flushedBytes = flushedBytes;
+            this.flushedFiles = flushedFiles;
+            this.quota = quota;
+        }
+    }
+
+    /**
+     * Room held for one upload. Used by one thread at a time.
+     */
+    public static final class Reservation implements Closeable {
+
+        private final Account account;
+        private final long credit;
+        private long held;
+
+        private Reservation(Account account, long credit) {
+            this.account = account;
+            this.credit = credit;
+        }
+
+        /**
+         * Holds {@code bytes} more, unless that takes the owner over quota.
+         */
+        public void hold(long bytes) throws QuotaExceededException {
+            account.inFlight.add(bytes);
+            held += bytes;
+            long quota = account.quota;
+            if (quota > 0 && account.flushedBytes + account.bytes.sum() + account.inFlight.sum() - credit > quota) {
+                account.inFlight.add(-bytes);
+                held -= bytes;
+                throw new QuotaExceededException(quota);
+            }
+        }
+
+        /**
+         * The stream, holding each byte as it is read: reading fails with a
+         * {@link QuotaExceededException} as soon as the upload crosses the quota.
+         */
+        public InputStream track(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) hold(1);
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int off, int len) throws IOException {
+                    int n = super.read(buffer, off, len);
+                    if (n > 0) hold(n);
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            account.inFlight.add(-held);
+            held = 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.shruthi.vault.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * The chunks that make up chunked content, in order, as kept in {@code ChunkManifest.chunks}:
+ * per chunk a 32-byte SHA-256 followed by a 4-byte length.
+ *
+ * @param hashes  hex SHA-256 of each chunk
+ * @param offsets start of each chunk in the content, plus the total length as the last entry
+ */
+record ChunkList(String[] hashes, long[] offsets) {
+
+    private static final int ENTRY_SIZE = 32 + 4;
+
+    static ChunkList decode(byte[] encoded) {
+        int count = encoded.length / ENTRY_SIZE;
+        String[] hashes = new String[count];
+        long[] offsets = new long[count + 1];
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        byte[] hash = new byte[32];
+        for (int i = 0; i < count; i++) {
+            in.get(hash);
+            hashes[i] = HexFormat.of().formatHex(hash);
+            offsets[i + 1] = offsets[i] + in.getInt();
+        }
+        return new ChunkList(hashes, offsets);
+    }
+
+    static void append(ByteArrayOutputStream encoded, String hash, int length) {
+        encoded.writeBytes(HexFormat.of().parseHex(hash));
+        encoded.writeBytes(ByteBuffer.allocate(4).putInt(length).array());
+    }
+
+    int count() {
+        return hashes.length;
+    }
+
+    long size() {
+        return offsets[hashes.length];
+    }
+
+    long length(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @return index of the chunk holding the byte at {@code position}
+     */
+    int indexOf(long position) {
+        int i = Arrays.binarySearch(offsets, 0, hashes.length, position);
+        return i >= 0 ? i : -i - 2;
+    }
+}
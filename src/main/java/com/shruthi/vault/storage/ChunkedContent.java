@@ -0,0 +1,74 @@
+package com.shruthi.vault.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Content stored as a sequence of chunk blobs, read as one. Only the chunk under the current
+ * position is open at a time; each chunk is decrypted and decompressed on its own, so a range
+ * read touches just the chunks it covers.
+ */
+final class ChunkedContent implements StoredContent {
+
+    interface ChunkOpener {
+        StoredContent open(String chunkHash) throws IOException;
+    }
+
+    private final ChunkList chunks;
+    private final ChunkOpener opener;
+    private int current = -1;
+    private StoredContent chunk;
+
+    ChunkedContent(ChunkList chunks, ChunkOpener opener) {
+        this.chunks = chunks;
+        this.opener = opener;
+    }
+
+    @Override
+    public long size() {
+        return chunks.size();
+    }
+
+    @Override
+    public Optional<Path> plainFile() {
+        return Optional.empty();
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        while (count > 0 && position < size()) {
+            int index = chunks.indexOf(position);
+            long within = position - chunks.offsets()[index];
+            long n = Math.min(count, chunks.length(index) - within);
+            chunk(index).transferTo(within, n, target);
+            position += n;
+            count -= n;
+        }
+    }
+
+    @Override
+    public int read(long position, ByteBuffer target) throws IOException {
+        if (position >= size()) return -1;
+        int index = chunks.indexOf(position);
+        return chunk(index).read(position - chunks.offsets()[index], target);
+    }
+
+    private StoredContent chunk(int index) throws IOException {
+        if (index != current) {
+            if (chunk != null) chunk.close();
+            chunk = null;
+            current = -1;
+            chunk = opener.open(chunks.hashes()[index]);
+            current = index;
+        }
+        return chunk;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (chunk != null) chunk.close();
+    }
+}
@@ -0,0 +1,91 @@
+package com.shruthi.vault.storage;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Decides per upload whether content is stored gzip-compressed. Types that are known to compress
+ * well (text, JSON, XML, scripts) always are and types that are already compressed (images,
+ * audio, video, archives) never are. For anything else, the first bytes of the upload are
+ * trial-compressed at the fastest level, and the content is compressed only if the sample
+ * shrinks enough.
+ */
+@Component
+public class CompressionPolicy {
+
+    public static final String GZIP = "gzip";
+
+    private static final Set<String> COMPRESSIBLE = Set.of(
+            "application/json", "application/xml", "application/javascript", "application/x-javascript",
+            "application/x-sh", "application/sql", "application/x-yaml", "application/yaml",
+            "application/rtf", "application/x-ndjson", "image/svg+xml");
+
+    private static final Set<String> INCOMPRESSIBLE = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/x-bzip2", "application/x-xz", "application/zstd",
+            "application/pdf", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            "application/vnd.openxmlformats-officedocument.presentationml.presentation");
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final int level;
+    @Getter
+    private final int sampleSize;
+    private final int minSize;
+    private final double maxRatio;
+
+    public CompressionPolicy(@Value("${file.compression.enabled:true}") boolean enabled,
+                             @Value("${file.compression.level:6}") int level,
+                             @Value("${file.compression.sample-size:65536}") int sampleSize,
+                             @Value("${file.compression.min-size:1024}") int minSize,
+                             @Value("${file.compression.max-ratio:0.9}") double maxRatio) {
+        this.enabled = enabled;
+        this.level = level;
+        this.sampleSize = sampleSize;
+        this.minSize = minSize;
+        this.maxRatio = maxRatio;
+    }
+
+    /**
+     * @param sample the first {@code length} bytes of the content
+     * @param ended  true if the sample is the whole content
+     */
+    public boolean shouldCompress(String contentType, byte[] sample, int length, boolean ended) {
+        if (!enabled || (ended && length < minSize)) return false;
+
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) type = type.substring(0, semicolon).trim();
+
+        if (type.startsWith("text/") || COMPRESSIBLE.contains(type) || type.endsWith("+json") || type.endsWith("+xml")) {
+            return true;
+        }
+        if (type.startsWith("image/") || type.startsWith("audio/") || type.startsWith("video/") || INCOMPRESSIBLE.contains(type)) {
+            return false;
+        }
+        return compressedSize(sample, length) <= length * maxRatio;
+    }
+
+    private static int compressedSize(byte[] sample, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] out = new byte[8192];
+            int total = 0;
+            while (!deflater.finished()) {
+                total += deflater.deflate(out);
+            }
+            return total;
+        } finally {
+            deflater.end();
+        }
+    }
+}
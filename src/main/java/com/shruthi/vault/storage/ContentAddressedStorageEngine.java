@@ -0,0 +1,1125 @@
+package com.shruthi.vault.storage;
+
+import com.shruthi.vault.model.Blob;
+import com.shruthi.vault.model.ChunkManifest;
+import com.shruthi.vault.repository.BlobRepository;
+import com.shruthi.vault.repository.ChunkManifestRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.crypto.SecretKey;
+
+/**
+ * Stores each distinct content once, under {@code blobs/ab/cd/<sha256>} (the {@link ShardLayout}
+ * is configurable), hashing while the
+ * bytes stream into a temp file. Blob rows carry a reference count; the file is removed when
+ * the last reference is released. Storage paths of records written before this engine
+ * existed are plain file paths and are still resolved and released as such.
+ * <p>
+ * With encryption enabled every new blob is written through {@link SegmentedGcm} under its own
+ * data key, wrapped by {@link EnvelopeEncryption} and kept on the blob row. The hash is taken
+ * over the plaintext, so identical uploads still deduplicate onto one encrypted copy.
+ * <p>
+ * Content the {@link CompressionPolicy} picks is gzip-compressed before it is encrypted. The
+ * coding is kept on the blob row; {@link #open} decompresses transparently and also exposes the
+ * compressed bytes, so they can be sent to clients that accept gzip without recompressing.
+ * Small blobs opened repeatedly are served from memory by the {@link HotContentCache}.
+ * <p>
+ * Content of at least one maximum chunk is split by the {@link ContentDefinedChunker} and each
+ * chunk is stored as a blob of its own, listed in a {@link ChunkManifest} under the hash of the
+ * whole content ({@code cdc/<sha256>} keys). A new version of a large file then only writes the
+ * chunks around its edits; the unchanged ones already exist and just gain a reference. The
+ * manifest holds one reference on each of its chunks and gives them up when it is removed.
+ * <p>
+ * Clients can also chunk content themselves and sync it: {@link #missingChunks} tells them which
+ * chunks to send, {@link #putChunk} stores those unreferenced, and {@link #assemble} turns the
+ * full list into content. Chunks are shared by everyone, so which of them a user may name is
+ * up to the caller (see {@code ChunkSyncService}). Chunk existence and references are handled in batches of hashes, so
+ * content with hundreds of thousands of chunks costs hundreds of statements, not per chunk ones.
+ * <p>
+ * {@link #reclaimOrphans} cleans up what reference counting can't: rows left at zero references
+ * (unclaimed sync chunks, a crash between a release's decrement and its delete), blob files
+ * whose row was never inserted, and temp files of interrupted writes. {@link #reconcileReferences}
+ * recounts references from the file rows and manifests and corrects counts that drifted, such as
+ * one left too high by a crash between deleting a row and releasing its content.
+ * <p>
+ * Blob files are never written in place: content streams into a temp file on the same file
+ * system and, once its blob row is inserted, is renamed into its address atomically, so readers
+ * see either no file or a whole one. The row goes first because every copy is encrypted under
+ * its own data key: a node that loses the insert for a hash drops its copy instead of replacing
+ * the winner's. With {@code file.storage.fsync} the temp file is forced to disk before the
+ * rename and the directory after it, so the content is durable before any file record points
+ * at it; deduplicated writes skip both. A crash between the insert and the rename leaves a row
+ * without a file and without references, which {@link #reconcileReferences} corrects.
+ * <p>
+ * After a change of shard layout, blobs written under the old one are still found (a lookup
+ * that misses tries the other layouts) until {@link #relocate} has moved them into place.
+ */
+@Component
+public class ContentAddressedStorageEngine implements StorageEngine {
+
+    static final String KEY_PREFIX = "sha256/";
+    static final String MANIFEST_PREFIX = "cdc/";
+
+    // Hashes per IN (...) statement
+    private static final int HASH_BATCH_SIZE = 1000;
+    // Manifest rows per page when reading their chunk lists
+    private static final int MANIFEST_PAGE_SIZE = 100;
+
+    private final BlobRepository blobRepository;
+    private final ChunkManifestRepository manifestRepository;
+    private final EnvelopeEncryption encryption;
+    private final CompressionPolicy compression;
+    private final ContentDefinedChunker chunker;
+    private final HotContentCache hotContent;
+    private final Path blobRoot;
+    private final Path tempRoot;
+    private final boolean fsync;
+    private final ShardLayout layout;
+    private final StripedLocks locks = new StripedLocks(64);
+
+    // hash -> how the blob is stored (unwrapped data key, coding), so downloads don't look up the blob row every time
+    private final Cache<String, StoredForm> storedForms = Caffeine.newBuilder().maximumSize(10_000).recordStats().build();
+    // content hash -> chunk list of chunked content, weighed by chunk count
+    private final Cache<String, ChunkList> chunkLists = Caffeine.newBuilder()
+            .maximumWeight(1_000_000).weigher((String hash, ChunkList chunks) -> chunks.count()).recordStats().build();
+    // storage key -> reference count drift the last reconciliation saw, to be confirmed by the next
+    private final Cache<String, Drift> suspectedDrift = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    private final Timer writeTimer;
+    private final Timer compressedWriteTimer;
+    private final Timer storedCommit;
+    private final Timer dedupCommit;
+    private final Timer openTimer;
+    private final Timer releaseTimer;
+    private final Counter storedChunkBytes;
+    private final Counter dedupChunkBytes;
+
+    public ContentAddressedStorageEngine(BlobRepository blobRepository,
+                                         ChunkManifestRepository manifestRepository,
+                                         EnvelopeEncryption encryption,
+                                         CompressionPolicy compression,
+                                         ContentDefinedChunker chunker,
+                                         HotContentCache hotContent,
+                                         @Value("${file.upload-dir}") String uploadDir,
+                                         @Value("${file.storage.fsync:false}") boolean fsync,
+                                         @Value("${file.storage.shard-depth:2}") int shardDepth,
+                                         @Value("${file.storage.shard-width:2}") int shardWidth,
+                                         MeterRegistry registry) {
+        this.blobRepository = blobRepository;
+        this.manifestRepository = manifestRepository;
+        this.encryption = encryption;
+        this.compression = compression;
+        this.chunker = chunker;
+        this.hotContent = hotContent;
+        this.blobRoot = Paths.get(uploadDir, "blobs");
+        this.tempRoot = Paths.get(uploadDir, ".tmp");
+        this.fsync = fsync;
+        this.layout = new ShardLayout(shardDepth, shardWidth);
+
+        CaffeineCacheMetrics.monitor(registry, storedForms, "storage.blobs");
+        CaffeineCacheMetrics.monitor(registry, chunkLists, "storage.chunk-lists");
+        // Streaming to the temp file (disk, hashing, compression, encryption) vs. publishing it under the hash
+        this.writeTimer = storageTimer("vault.storage.write").tag("encrypted", String.valueOf(encryption.isEnabled()))
+                .tag("compressed", "false").register(registry);
+        this.compressedWriteTimer = storageTimer("vault.storage.write").tag("encrypted", String.valueOf(encryption.isEnabled()))
+                .tag("compressed", "true").register(registry);
+        this.storedCommit = storageTimer("vault.storage.commit").tag("result", "stored").register(registry);
+        this.dedupCommit = storageTimer("vault.storage.commit").tag("result", "deduplicated").register(registry);
+        this.openTimer = storageTimer("vault.storage.open").register(registry);
+        this.releaseTimer = storageTimer("vault.storage.release").register(registry);
+        // Chunk bytes actually written vs. found already stored: the write volume chunking saves
+        this.storedChunkBytes = Counter.builder("vault.storage.chunk.bytes").tag("result", "stored").baseUnit("bytes").register(registry);
+        this.dedupChunkBytes = Counter.builder("vault.storage.chunk.bytes").tag("result", "deduplicated").baseUnit("bytes").register(registry);
+    }
+
+    private static Timer.Builder storageTimer(String name) {
+        return Timer.builder(name).publishPercentiles(0.5, 0.95, 0.99);
+    }
+
+    @Override
+    public StoredBlob store(InputStream content, String contentType) throws IOException {
+        if (!chunker.isEnabled()) return write(content, contentType);
+
+        byte[] buffer = new byte[chunker.getMaxSize()];
+        int filled = content.readNBytes(buffer, 0, buffer.length);
+        if (filled < buffer.length) {
+            // Fits in one chunk: stored as a single blob
+            return write(new ByteArrayInputStream(buffer, 0, filled), contentType);
+        }
+        return writeChunked(buffer, content, contentType);
+    }
+
+    @Override
+    public StoredBlob importFile(Path source, String contentType) throws IOException {
+        if (chunker.isEnabled() && Files.size(source) >= chunker.getMaxSize()) {
+            try (InputStream in = Files.newInputStream(source)) {
+                return store(in, contentType);
+            } finally {
+                Files.deleteIfExists(source);
+            }
+        }
+
+        boolean compress;
+        try (InputStream in = Files.newInputStream(source)) {
+            byte[] head = in.readNBytes(compression.getSampleSize());
+            compress = compression.shouldCompress(contentType, head, head.length, head.length < compression.getSampleSize());
+        }
+
+        if (!encryption.isEnabled() && !compress) {
+            MessageDigest digest = sha256();
+            try (DigestInputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            try {
+                return commit(source, HexFormat.of().formatHex(digest.digest()), Files.size(source), null, null);
+            } finally {
+                Files.deleteIfExists(source);
+            }
+        }
+
+        // Plaintext must not be kept: hash, compress and encrypt into a new file in the same pass
+        try (InputStream in = Files.newInputStream(source)) {
+            return write(in, contentType);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    /**
+     * Streams the content into a temp file (hashing the plaintext, compressing if the policy
+     * says so, encrypting if enabled) and commits it. The head of the stream is buffered first
+     * so the compression policy can look at it.
+     */
+    private StoredBlob write(InputStream content, String contentType) throws IOException {
+        Files.createDirectories(tempRoot);
+        Path temp = Files.createTempFile(tempRoot, "upload-", ".tmp");
+        try {
+            byte[] head = content.readNBytes(compression.getSampleSize());
+            boolean compress = compression.shouldCompress(contentType, head, head.length, head.length < compression.getSampleSize());
+
+            MessageDigest digest = sha256();
+            SecretKey dataKey = encryption.isEnabled() ? encryption.newDataKey() : null;
+            long size;
+            Timer.Sample sample = Timer.start();
+            try (DigestInputStream in = new DigestInputStream(new SequenceInputStream(new ByteArrayInputStream(head), content), digest)) {
+                try (OutputStream out = outputFor(temp, dataKey, compress)) {
+                    size = in.transferTo(out);
+                }
+            } finally {
+                sample.stop(compress ? compressedWriteTimer : writeTimer);
+            }
+            return commit(temp, HexFormat.of().formatHex(digest.digest()), size, dataKey, compress ? CompressionPolicy.GZIP : null);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Splits the content into chunks and stores each one, then records the list under the hash
+     * of the whole content. {@code buffer} arrives full with the head of the content.
+     */
+    private StoredBlob writeChunked(byte[] buffer, InputStream content, String contentType) throws IOException {
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        List<String> taken = new ArrayList<>();
+        long size = 0;
+        long storedSize = 0;
+        int filled = buffer.length;
+        boolean ended = false;
+        try {
+            while (filled > 0) {
+                int cut = chunker.cut(buffer, filled);
+                digest.update(buffer, 0, cut);
+                StoredBlob chunk = writeChunk(buffer, cut, contentType);
+                taken.add(chunk.storageKey());
+                ChunkList.append(encoded, chunk.contentHash(), cut);
+                size += cut;
+                storedSize += chunk.storedSize();
+
+                System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                filled -= cut;
+                if (!ended) {
+                    filled += content.readNBytes(buffer, filled, buffer.length - filled);
+                    ended = filled < buffer.length;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            releaseAll(taken);
+            throw e;
+        }
+        return commitManifest(HexFormat.of().formatHex(digest.digest()), size, taken, encoded.toByteArray(), storedSize);
+    }
+
+    /**
+     * Stores one chunk, skipping the write entirely when a blob with its hash already exists.
+     */
+    private StoredBlob writeChunk(byte[] buffer, int length, String contentType) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(buffer, 0, length);
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        ReentrantLock lock = locks.get(hash);
+        lock.lock();
+        try {
+            if (blobRepository.incrementRefCount(hash) > 0) {
+                dedupChunkBytes.increment(length);
+                return existing(hash, length);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        StoredBlob chunk = write(new ByteArrayInputStream(buffer, 0, length), contentType);
+        (chunk.deduplicated() ? dedupChunkBytes : storedChunkBytes).increment(length);
+        return chunk;
+    }
+
+    /**
+     * Publishes the manifest, or adds a reference to an identical one and gives back the chunk
+     * references taken for this copy (the existing manifest holds its own). Takes over the
+     * chunk references either way, including when it fails.
+     */
+    private StoredBlob commitManifest(String hash, long size, List<String> chunkKeys, byte[] encoded, long storedSize) throws IOException {
+        boolean published = false;
+        boolean deduplicated;
+        ReentrantLock lock = locks.get(hash);
+        lock.lock();
+        try {
+            deduplicated = manifestRepository.incrementRefCount(hash) > 0;
+            if (!deduplicated) {
+                try {
+                    manifestRepository.saveAndFlush(ChunkManifest.builder()
+                            .unsaved(true)
+                            .hash(hash)
+                            .size(size)
+                            .chunkCount(chunkKeys.size())
+                            .refCount(1)
+                            .chunks(encoded)
+                            .storedSize(storedSize)
+                            .createdAt(LocalDateTime.now())
+                            .build());
+                } catch (DataIntegrityViolationException e) {
+                    // Another node stored the same content first
+                    manifestRepository.incrementRefCount(hash);
+                    deduplicated = true;
+                }
+            }
+            published = true;
+        } finally {
+            lock.unlock();
+            if (!published) releaseAll(chunkKeys);
+        }
+        if (deduplicated) releaseAll(chunkKeys);
+        return new StoredBlob(MANIFEST_PREFIX + hash, hash, size, deduplicated, null, storedSize);
+    }
+
+    @Override
+    public Set<String> missingChunks(Collection<String> chunkHashes, String baseStorageKey) throws IOException {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String hash : chunkHashes) missing.add(requireHash(hash));
+        if (baseStorageKey != null && isManifestKey(baseStorageKey)) {
+            // A new version mostly repeats the base file's chunks: rule those out without a query
+            for (String hash : chunkListFor(baseStorageKey).hashes()) missing.remove(hash);
+        }
+        for (List<String> batch : batches(List.copyOf(missing))) {
+            for (String present : blobRepository.findExistingHashes(batch)) missing.remove(present);
+        }
+        return missing;
+    }
+
+    @Override
+    public Set<String> chunksOf(Collection<String> storageKeys) {
+        Set<String> chunks = new HashSet<>();
+        for (String key : storageKeys) {
+            if (isBlobKey(key)) {
+                chunks.add(hashOf(key));
+            } else if (isManifestKey(key)) {
+                try {
+                    chunks.addAll(Arrays.asList(chunkListFor(key).hashes()));
+                } catch (NoSuchFileException e) {
+                    // Dangling; whatever it was made of proves nothing
+                }
+            }
+        }
+        return chunks;
+    }
+
+    @Override
+    public boolean putChunk(String chunkHash, byte[] content, int length, String contentType) throws IOException {
+        String hash = requireHash(chunkHash);
+        MessageDigest digest = sha256();
+        digest.update(content, 0, length);
+        if (!hash.equals(HexFormat.of().formatHex(digest.digest()))) {
+            throw new IllegalArgumentException("Chunk content does not match its hash");
+        }
+        if (blobRepository.existsById(hash)) return false;
+
+        StoredBlob chunk = write(new ByteArrayInputStream(content, 0, length), contentType);
+        storedChunkBytes.increment(length);
+        // Left unreferenced until a manifest lists it; unclaimed chunks are for the sweeper
+        blobRepository.decrementRefCount(chunk.contentHash());
+        return true;
+    }
+
+    @Override
+    public StoredBlob assemble(List<String> chunkHashes) throws IOException {
+        if (chunkHashes.isEmpty()) throw new IllegalArgumentException("No chunks");
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (String hash : chunkHashes) occurrences.merge(requireHash(hash), 1, Integer::sum);
+
+        // Reference every chunk before reading any, so none can go away underneath
+        Map<Integer, List<String>> byCount = new HashMap<>();
+        occurrences.forEach((hash, count) -> byCount.computeIfAbsent(count, c -> new ArrayList<>()).add(hash));
+        Map<Integer, List<String>> taken = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<Integer, List<String>> group : byCount.entrySet()) {
+            for (List<String> batch : batches(group.getValue())) {
+                List<String> referenced = referenceBatch(batch, group.getKey(), missing);
+                taken.computeIfAbsent(group.getKey(), c -> new ArrayList<>()).addAll(referenced);
+            }
+        }
+        List<String> chunkKeys = chunkHashes.stream().map(hash -> KEY_PREFIX + requireHash(hash)).toList();
+        if (!missing.isEmpty()) {
+            taken.forEach((count, hashes) -> batches(hashes).forEach(batch -> blobRepository.decrementRefCounts(batch, count)));
+            throw new MissingChunksException(missing);
+        }
+
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        long size = 0;
+        long storedSize = 0;
+        try {
+            Map<String, Blob> blobs = new HashMap<>();
+            for (List<String> batch : batches(List.copyOf(occurrences.keySet()))) {
+                blobRepository.findAllById(batch).forEach(blob -> blobs.put(blob.getHash(), blob));
+            }
+
+            WritableByteChannel hashing = Channels.newChannel(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+            for (String key : chunkKeys) {
+                String hash = hashOf(key);
+                Blob blob = blobs.get(hash);
+                if (blob.getSize() > Integer.MAX_VALUE) throw new IllegalArgumentException("Chunk too large: " + hash);
+                try (StoredContent chunk = openContent(key)) {
+                    chunk.transferTo(0, chunk.size(), hashing);
+                }
+                ChunkList.append(encoded, hash, (int) blob.getSize());
+                size += blob.getSize();
+                storedSize += blob.getStoredSize() == null ? blob.getSize() : blob.getStoredSize();
+            }
+        } catch (IOException | RuntimeException e) {
+            releaseAll(chunkKeys);
+            throw e;
+        }
+        return commitManifest(HexFormat.of().formatHex(digest.digest()), size, chunkKeys, encoded.toByteArray(), storedSize);
+    }
+
+    /**
+     * Adds {@code count} references to each hash in the batch, in one statement. All stripes are
+     * held so no blob in the batch is inserted or removed between the update and, when some rows
+     * were missing, the query that tells which ones.
+     *
+     * @return the hashes that were referenced; the others are added to {@code missing}
+     */
+    private List<String> referenceBatch(List<String> batch, int count, List<String> missing) {
+        locks.lockAll();
+        try {
+            if (blobRepository.incrementRefCounts(batch, count) == batch.size()) return batch;
+            Set<String> present = new HashSet<>(blobRepository.findExistingHashes(batch));
+            List<String> referenced = new ArrayList<>();
+            for (String hash : batch) {
+                (present.contains(hash) ? referenced : missing).add(hash);
+            }
+            return referenced;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    private static <T> List<List<T>> batches(List<T> items) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += HASH_BATCH_SIZE) {
+            batches.add(items.subList(i, Math.min(items.size(), i + HASH_BATCH_SIZE)));
+        }
+        return batches;
+    }
+
+    private static String requireHash(String hash) {
+        String normalized = hash == null ? "" : hash.toLowerCase(Locale.ROOT);
+        if (normalized.length() != 64 || !normalized.chars().allMatch(HexFormat::isHexDigit)) {
+            throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+        }
+        return normalized;
+    }
+
+    private void releaseAll(List<String> storageKeys) throws IOException {
+        for (String storageKey : storageKeys) {
+            release(storageKey);
+        }
+    }
+
+    // plaintext -> [gzip] -> [encrypt] -> file
+    private OutputStream outputFor(Path temp, SecretKey dataKey, boolean compress) throws IOException {
+        OutputStream out = Files.newOutputStream(temp);
+        if (dataKey != null) out = SegmentedGcm.encryptingStream(out, dataKey, encryption.getSegmentSize());
+        if (!compress) return out;
+
+        int level = compression.getLevel();
+        return new GZIPOutputStream(out, 64 * 1024) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Either adds a reference to an existing blob (dropping the new copy) or inserts the blob
+     * row and moves the new copy into its content address. Serialized per hash so a concurrent release can't
+     * delete the file between our row check and the move.
+     */
+    private StoredBlob commit(Path written, String hash, long size, SecretKey dataKey, String encoding) throws IOException {
+        Timer.Sample sample = Timer.start();
+        StoredBlob blob = commitLocked(written, hash, size, dataKey, encoding);
+        sample.stop(blob.deduplicated() ? dedupCommit : storedCommit);
+        return blob;
+    }
+
+    private StoredBlob commitLocked(Path written, String hash, long size, SecretKey dataKey, String encoding) throws IOException {
+        ReentrantLock lock = locks.get(hash);
+        lock.lock();
+        try {
+            if (blobRepository.incrementRefCount(hash) > 0) {
+                return existing(hash, size);
+            }
+
+            long storedSize = Files.size(written);
+            try {
+                // Claim the hash before touching its file: every copy is encrypted under its own
+                // data key, so only the node whose row wins may put its copy in place. A real
+                // insert, flushed here, so a row that appeared since the increment fails it.
+                blobRepository.saveAndFlush(Blob.builder()
+                        .unsaved(true)
+                        .hash(hash)
+                        .size(size)
+                        .refCount(1)
+                        .wrappedKey(dataKey == null ? null : encryption.wrap(dataKey))
+                        .encoding(encoding)
+                        .storedSize(storedSize)
+                        .createdAt(LocalDateTime.now())
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Another node inserted the same content first; our copy is left to the caller to delete
+                blobRepository.incrementRefCount(hash);
+                return existing(hash, size);
+            }
+
+            Path target = pathFor(hash);
+            try {
+                Files.createDirectories(target.getParent());
+                if (fsync) force(written, false);
+                // Replaces at most a stray file whose row was never written
+                Files.move(written, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (fsync) force(target.getParent(), true);
+            } catch (IOException | RuntimeException e) {
+                // Give the claim back; a node that referenced the row meanwhile keeps it
+                blobRepository.decrementRefCount(hash);
+                blobRepository.deleteIfUnreferenced(hash);
+                storedForms.invalidate(hash);
+                throw e;
+            }
+            return new StoredBlob(KEY_PREFIX + hash, hash, size, false, encoding, storedSize);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void force(Path path, boolean directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, directory ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory to sync it; the rename itself is still atomic
+            if (!directory) throw e;
+        }
+    }
+
+    /**
+     * A new reference to an already stored blob, described the way that blob was stored.
+     */
+    private StoredBlob existing(String hash, long size) {
+        StoredForm form = storedFormFor(hash);
+        return form == null
+                ? new StoredBlob(KEY_PREFIX + hash, hash, size, true, null, size)
+                : new StoredBlob(KEY_PREFIX + hash, hash, size, true, form.encoding(), form.storedSize());
+    }
+
+    @Override
+    public void retain(String storageKey) {
+        if (isManifestKey(storageKey)) {
+            manifestRepository.incrementRefCount(storageKey.substring(MANIFEST_PREFIX.length()));
+        } else if (isBlobKey(storageKey)) {
+            blobRepository.incrementRefCount(hashOf(storageKey));
+        }
+    }
+
+    @Override
+    public long release(String storageKey) throws IOException {
+        if (isManifestKey(storageKey)) {
+            String hash = storageKey.substring(MANIFEST_PREFIX.length());
+            manifestRepository.decrementRefCount(hash);
+            return dropManifestIfUnreferenced(hash);
+        }
+        if (!isBlobKey(storageKey)) {
+            return deleteFile(Paths.get(storageKey));
+        }
+
+        String hash = hashOf(storageKey);
+        Timer.Sample sample = Timer.start();
+        try {
+            blobRepository.decrementRefCount(hash);
+            return dropBlobIfUnreferenced(hash);
+        } finally {
+            sample.stop(releaseTimer);
+        }
+    }
+
+    /**
+     * Removes the blob row and file if nothing references the blob.
+     *
+     * @return bytes freed
+     */
+    private long dropBlobIfUnreferenced(String hash) throws IOException {
+        ReentrantLock lock = locks.get(hash);
+        lock.lock();
+        try {
+            if (blobRepository.deleteIfUnreferenced(hash) == 0) return 0;
+            storedForms.invalidate(hash);
+            hotContent.invalidate(KEY_PREFIX + hash);
+            return deleteFile(locate(hash));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the manifest if nothing references it, then gives up its chunk references.
+     *
+     * @return bytes freed, counting chunks that went with it
+     */
+    private long dropManifestIfUnreferenced(String hash) throws IOException {
+        ChunkList released = null;
+        ReentrantLock lock = locks.get(hash);
+        lock.lock();
+        try {
+            // The chunk list is needed after the row is gone, so read it first
+            Optional<ChunkManifest> manifest = manifestRepository.findById(hash);
+            if (manifest.isPresent() && manifest.get().getRefCount() <= 0 && manifestRepository.deleteIfUnreferenced(hash) > 0) {
+                chunkLists.invalidate(hash);
+                released = ChunkList.decode(manifest.get().getChunks());
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (released == null) return 0;
+        long freed = 0;
+        for (String chunkHash : released.hashes()) {
+            freed += release(KEY_PREFIX + chunkHash);
+        }
+        return freed;
+    }
+
+    private static long deleteFile(Path path) throws IOException {
+        try {
+            long size = Files.size(path);
+            Files.delete(path);
+            return size;
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public Set<String> findMissing(Collection<String> storageKeys, IoThrottle throttle) throws IOException {
+        Set<String> missing = new LinkedHashSet<>();
+        List<String> blobHashes = new ArrayList<>();
+        List<String> manifestHashes = new ArrayList<>();
+        for (String storageKey : storageKeys) {
+            if (isManifestKey(storageKey)) {
+                manifestHashes.add(storageKey.substring(MANIFEST_PREFIX.length()));
+            } else if (isBlobKey(storageKey)) {
+                blobHashes.add(hashOf(storageKey));
+            } else {
+                throttle.acquire();
+                if (!Files.exists(Paths.get(storageKey))) missing.add(storageKey);
+            }
+        }
+
+        for (List<String> batch : batches(manifestHashes)) {
+            throttle.acquire();
+            Set<String> present = new HashSet<>(manifestRepository.findExistingHashes(batch));
+            for (String hash : batch) {
+                if (!present.contains(hash)) missing.add(MANIFEST_PREFIX + hash);
+            }
+        }
+        for (List<String> batch : batches(blobHashes)) {
+            throttle.acquire();
+            Set<String> present = new HashSet<>(blobRepository.findExistingHashes(batch));
+            for (String hash : batch) {
+                throttle.acquire();
+                if (!present.contains(hash) || !Files.exists(locate(hash))) missing.add(KEY_PREFIX + hash);
+            }
+        }
+        return missing;
+    }
+
+    @Override
+    public OrphanSweep reclaimOrphans(LocalDateTime cutoff, IoThrottle throttle) throws IOException {
+        int manifests = 0;
+        int blobs = 0;
+        long bytes = 0;
+
+        // Manifests first: dropping one can leave chunks unreferenced, which then go with it
+        String after = "";
+        List<String> page;
+        while (!(page = manifestRepository.findUnreferencedHashes(after, cutoff, PageRequest.of(0, HASH_BATCH_SIZE))).isEmpty()) {
+            for (String hash : page) {
+                throttle.acquire();
+                long freed = dropManifestIfUnreferenced(hash);
+                manifests++;
+                bytes += freed;
+            }
+            after = page.get(page.size() - 1);
+        }
+
+        // Unclaimed sync chunks and references lost to a crash
+        after = "";
+        while (!(page = blobRepository.findUnreferencedHashes(after, cutoff, PageRequest.of(0, HASH_BATCH_SIZE))).isEmpty()) {
+            for (String hash : page) {
+                throttle.acquire();
+                long freed = dropBlobIfUnreferenced(hash);
+                blobs++;
+                bytes += freed;
+            }
+            after = page.get(page.size() - 1);
+        }
+
+        // Blob files whose row was never written (crash between the move and the insert)
+        int strayFiles = 0;
+        if (Files.isDirectory(blobRoot)) {
+            try (Stream<Path> walk = Files.walk(blobRoot)) {
+                Iterator<Path> files = walk.filter(Files::isRegularFile).iterator();
+                List<Path> batch = new ArrayList<>(HASH_BATCH_SIZE);
+                while (files.hasNext()) {
+                    throttle.acquire();
+                    batch.add(files.next());
+                    if (batch.size() == HASH_BATCH_SIZE || !files.hasNext()) {
+                        for (Path stray : strayBlobFiles(batch, cutoff, throttle)) {
+                            bytes += deleteFile(stray);
+                            strayFiles++;
+                        }
+                        batch.clear();
+                    }
+                }
+            }
+        }
+
+        int tempFiles = 0;
+        if (Files.isDirectory(tempRoot)) {
+            try (DirectoryStream<Path> temps = Files.newDirectoryStream(tempRoot)) {
+                for (Path temp : temps) {
+                    throttle.acquire();
+                    if (isOlderThan(temp, cutoff)) {
+                        bytes += deleteFile(temp);
+                        tempFiles++;
+                    }
+                }
+            }
+        }
+        return new OrphanSweep(manifests, blobs, strayFiles, tempFiles, bytes);
+    }
+
+    @Override
+    public int reconcileReferences(String hashPrefix, Function<Collection<String>, Map<String, Long>> references,
+                                   IoThrottle throttle) throws IOException {
+        String beforeHash = hashPrefix.substring(0, hashPrefix.length() - 1) + (char) (hashPrefix.charAt(hashPrefix.length() - 1) + 1);
+
+        // One pass over every manifest: the references they hold on chunks in range (one per
+        // occurrence), and their own counts
+        Map<String, Long> chunkReferences = new HashMap<>();
+        Map<String, Long> manifestCounts = new LinkedHashMap<>();
+        String after = "";
+        List<ChunkManifest> manifests;
+        while (!(manifests = manifestRepository.findByHashGreaterThanOrderByHashAsc(after, PageRequest.of(0, MANIFEST_PAGE_SIZE))).isEmpty()) {
+            for (ChunkManifest manifest : manifests) {
+                throttle.acquire();
+                for (String chunk : ChunkList.decode(manifest.getChunks()).hashes()) {
+                    if (chunk.startsWith(hashPrefix)) chunkReferences.merge(chunk, 1L, Long::sum);
+                }
+                if (manifest.getHash().startsWith(hashPrefix)) manifestCounts.put(manifest.getHash(), manifest.getRefCount());
+            }
+            after = manifests.get(manifests.size() - 1).getHash();
+        }
+
+        int corrected = 0;
+        for (List<String> batch : batches(List.copyOf(manifestCounts.keySet()))) {
+            throttle.acquire();
+            Map<String, Long> fromFiles = references.apply(batch.stream().map(hash -> MANIFEST_PREFIX + hash).toList());
+            for (String hash : batch) {
+                long expected = fromFiles.getOrDefault(MANIFEST_PREFIX + hash, 0L);
+                long observed = manifestCounts.get(hash);
+                if (driftConfirmed(MANIFEST_PREFIX + hash, observed, expected)) {
+                    throttle.acquire();
+                    corrected += manifestRepository.correctRefCount(hash, observed, expected);
+                }
+            }
+        }
+
+        after = hashPrefix;
+        List<Blob> blobs;
+        while (!(blobs = blobRepository.findByHashGreaterThanAndHashLessThanOrderByHashAsc(after, beforeHash, PageRequest.of(0, HASH_BATCH_SIZE))).isEmpty()) {
+            throttle.acquire();
+            Map<String, Long> fromFiles = references.apply(blobs.stream().map(blob -> KEY_PREFIX + blob.getHash()).toList());
+            for (Blob blob : blobs) {
+                long expected = fromFiles.getOrDefault(KEY_PREFIX + blob.getHash(), 0L)
+                        + chunkReferences.getOrDefault(blob.getHash(), 0L);
+                if (driftConfirmed(KEY_PREFIX + blob.getHash(), blob.getRefCount(), expected)) {
+                    throttle.acquire();
+                    corrected += blobRepository.correctRefCount(blob.getHash(), blob.getRefCount(), expected);
+                }
+            }
+            after = blobs.get(blobs.size() - 1).getHash();
+        }
+        return corrected;
+    }
+
+    /**
+     * Whether a count that is off should be corrected: only once two passes in a row found it
+     * off the same way. Writes take their reference before their row exists and deletes drop
+     * theirs after, so a single look can catch a count mid-change.
+     */
+    private boolean driftConfirmed(String storageKey, long observed, long expected) {
+        if (observed == expected) {
+            suspectedDrift.invalidate(storageKey);
+            return false;
+        }
+        Drift drift = new Drift(observed, expected);
+        if (drift.equals(suspectedDrift.getIfPresent(storageKey))) {
+            suspectedDrift.invalidate(storageKey);
+            return true;
+        }
+        suspectedDrift.put(storageKey, drift);
+        return false;
+    }
+
+    /**
+     * The files in the batch that are named like a blob, have no blob row, and are older than
+     * the cutoff. Files named otherwise are not ours to judge and are left alone.
+     */
+    private List<Path> strayBlobFiles(List<Path> batch, LocalDateTime cutoff, IoThrottle throttle) throws IOException {
+        Map<String, Path> byHash = new HashMap<>();
+        for (Path file : batch) {
+            String name = file.getFileName().toString();
+            if (isHashName(name)) byHash.put(name, file);
+        }
+        if (byHash.isEmpty()) return List.of();
+        blobRepository.findExistingHashes(byHash.keySet()).forEach(byHash::remove);
+
+        List<Path> stray = new ArrayList<>();
+        for (Map.Entry<String, Path> entry : byHash.entrySet()) {
+            throttle.acquire();
+            // Recheck under the hash's lock: a commit may have published it since the query
+            ReentrantLock lock = locks.get(entry.getKey());
+            lock.lock();
+            try {
+                if (isOlderThan(entry.getValue(), cutoff) && !blobRepository.existsById(entry.getKey())) {
+                    stray.add(entry.getValue());
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return stray;
+    }
+
+    @Override
+    public int relocate(IoThrottle throttle) throws IOException {
+        if (!Files.isDirectory(blobRoot)) return 0;
+        int moved = 0;
+        try (Stream<Path> walk = Files.walk(blobRoot)) {
+            Iterator<Path> files = walk.filter(Files::isRegularFile).iterator();
+            while (files.hasNext()) {
+                throttle.acquire();
+                Path file = files.next();
+                String hash = file.getFileName().toString();
+                if (!isHashName(hash) || file.equals(pathFor(hash))) continue;
+
+                ReentrantLock lock = locks.get(hash);
+                lock.lock();
+                try {
+                    if (!Files.exists(file)) continue;
+                    Path target = pathFor(hash);
+                    if (Files.exists(target)) {
+                        // Written again under the current layout meanwhile; same content
+                        Files.delete(file);
+                    } else {
+                        Files.createDirectories(target.getParent());
+                        Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+                        if (fsync) force(target.getParent(), true);
+                    }
+                    moved++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        return moved;
+    }
+
+    private static boolean isOlderThan(Path file, LocalDateTime cutoff) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff.atZone(ZoneId.systemDefault()).toInstant());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public StoredContent open(String storageKey) throws IOException {
+        Timer.Sample sample = Timer.start();
+        try {
+            // Small single blobs may be served from memory; large, chunked and legacy content never is
+            StoredForm form = hotContent.isEnabled() && isBlobKey(storageKey) ? storedFormFor(hashOf(storageKey)) : null;
+            if (form == null || !hotContent.fits(form.size(), form.storedSize())) return openContent(storageKey);
+
+            StoredContent hot = hotContent.get(storageKey);
+            if (hot != null) return hot;
+            StoredContent content = openContent(storageKey);
+            return hotContent.admit(storageKey) ? hotContent.load(storageKey, content) : content;
+        } finally {
+            sample.stop(openTimer);
+        }
+    }
+
+    private StoredContent openContent(String storageKey) throws IOException {
+        if (isManifestKey(storageKey)) {
+            return new ChunkedContent(chunkListFor(storageKey), chunkHash -> openContent(KEY_PREFIX + chunkHash));
+        }
+
+        Path path = resolve(storageKey);
+        StoredForm form = isBlobKey(storageKey) ? storedFormFor(hashOf(storageKey)) : null;
+
+        StoredContent stored;
+        if (form == null || form.dataKey() == null) {
+            stored = new PlainContent(path, Files.size(path));
+        } else {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                stored = new EncryptedContent(channel, new SegmentedGcm.Reader(channel, form.dataKey()));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        return form != null && CompressionPolicy.GZIP.equals(form.encoding()) ? new GzipContent(stored, form.size()) : stored;
+    }
+
+    private ChunkList chunkListFor(String storageKey) throws NoSuchFileException {
+        String hash = storageKey.substring(MANIFEST_PREFIX.length());
+        ChunkList chunks = chunkLists.getIfPresent(hash);
+        if (chunks == null) {
+            ChunkManifest manifest = manifestRepository.findById(hash)
+                    .orElseThrow(() -> new NoSuchFileException(storageKey));
+            chunks = ChunkList.decode(manifest.getChunks());
+            chunkLists.put(hash, chunks);
+        }
+        return chunks;
+    }
+
+    /**
+     * @return null if there is no blob row (legacy plain files)
+     */
+    private StoredForm storedFormFor(String hash) {
+        StoredForm cached = storedForms.getIfPresent(hash);
+        if (cached != null) return cached;
+
+        Optional<Blob> blob = blobRepository.findById(hash);
+        if (blob.isEmpty()) return null;
+        Blob row = blob.get();
+        StoredForm form = new StoredForm(
+                row.getWrappedKey() == null ? null : encryption.unwrap(row.getWrappedKey()),
+                row.getEncoding(),
+                row.getSize(),
+                row.getStoredSize() == null ? row.getSize() : row.getStoredSize());
+        storedForms.put(hash, form);
+        return form;
+    }
+
+    @Override
+    public Path resolve(String storageKey) {
+        if (isManifestKey(storageKey)) return null;
+        if (!isBlobKey(storageKey)) return Paths.get(storageKey);
+        return locate(hashOf(storageKey));
+    }
+
+    /**
+     * Where the current layout puts the blob.
+     */
+    private Path pathFor(String hash) {
+        return layout.locate(blobRoot, hash);
+    }
+
+    /**
+     * Where the blob's file is: where the current layout puts it, or where an earlier layout
+     * did if it hasn't been relocated yet.
+     */
+    private Path locate(String hash) {
+        Path path = pathFor(hash);
+        if (Files.exists(path)) return path;
+        for (ShardLayout previous : layout.alternatives()) {
+            Path moved = previous.locate(blobRoot, hash);
+            if (Files.exists(moved)) return moved;
+        }
+        return path;
+    }
+
+    private static boolean isHashName(String name) {
+        return name.length() == 64 && name.chars().allMatch(c -> HexFormat.isHexDigit(c) && !Character.isUpperCase(c));
+    }
+
+    private static boolean isBlobKey(String storageKey) {
+        return storageKey.startsWith(KEY_PREFIX);
+    }
+
+    private static boolean isManifestKey(String storageKey) {
+        return storageKey.startsWith(MANIFEST_PREFIX);
+    }
+
+    private static String hashOf(String storageKey) {
+        return storageKey.substring(KEY_PREFIX.length());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @param dataKey null if not encrypted
+     * @param encoding null if not compressed
+     * @param size original content length
+     */
+    private record StoredForm(SecretKey dataKey, String encoding, long size, long storedSize) {
+    }
+
+    private record Drift(long observed, long expected) {
+    }
+
+    private static final class PlainContent implements StoredContent {
+
+        private final Path path;
+        private final long size;
+        private FileChannel channel;
+
+        PlainContent(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public Optional<Path> plainFile() {
+            return Optional.of(path);
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            FileChannel source = channel();
+            while (count > 0) {
+                long n = source.transferTo(position, count, target);
+                if (n <= 0) break;
+                position += n;
+                count -= n;
+            }
+        }
+
+        @Override
+        public int read(long position, ByteBuffer target) throws IOException {
+            return channel().read(target, position);
+        }
+
+        // Opened on first use: with sendfile the file is never read here
+        private FileChannel channel() throws IOException {
+            if (channel == null) channel = FileChannel.open(path, StandardOpenOption.READ);
+            return channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+
+    private record EncryptedContent(FileChannel channel, SegmentedGcm.Reader reader) implements StoredContent {
+
+        @Override
+        public long size() {
+            return reader.size();
+        }
+
+        @Override
+        public Optional<Path> plainFile() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            reader.transferTo(position, count, target);
+        }
+
+        @Override
+        public int read(long position, ByteBuffer target) throws IOException {
+            return reader.read(position, target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.shruthi.vault.storage;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content-defined chunking (FastCDC-style Gear rolling hash). Boundaries depend only on the
+ * bytes around them, so an edit in the middle of a file moves the boundaries near the edit and
+ * leaves every other chunk identical to the previous version's, where the content-addressed
+ * store deduplicates it. Chunks are between a quarter and four times the average size; the
+ * cut condition is stricter before the average and looser after it, which keeps sizes close
+ * to the average.
+ */
+@Component
+public class ContentDefinedChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: boundaries, and therefore deduplication, must not change between runs
+        long seed = 0x5eed_c0de_1234_5678L;
+        for (int i = 0; i < GEAR.length; i++) {
+            seed += 0x9e3779b97f4a7c15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    @Getter
+    private final boolean enabled;
+    @Getter
+    private final int minSize;
+    @Getter
+    private final int averageSize;
+    @Getter
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    public ContentDefinedChunker(@Value("${file.chunking.enabled:true}") boolean enabled,
+                                 @Value("${file.chunking.average-size:524288}") int averageSize) {
+        if (Integer.bitCount(averageSize) != 1 || averageSize < 1024) {
+            throw new IllegalArgumentException("file.chunking.average-size must be a power of two of at least 1024");
+        }
+        this.enabled = enabled;
+        this.averageSize = averageSize;
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 4;
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        // Gear hashes mix best in the high bits, so the masks select those
+        this.strictMask = -1L << (64 - (bits + 1));
+        this.looseMask = -1L << (64 - (bits - 1));
+    }
+
+    /**
+     * Finds the end of the first chunk in {@code data[0, length)}. The caller passes either
+     * {@link #getMaxSize()} bytes or everything that is left of the content.
+     *
+     * @return length of the first chunk
+     */
+    public int cut(byte[] data, int length) {
+        if (length <= minSize) return length;
+        int normal = Math.min(averageSize, length);
+        int end = Math.min(maxSize, length);
+
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & strictMask) == 0) return i + 1;
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xff];
+            if ((hash & looseMask) == 0) return i + 1;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,70 @@
+package com.shruthi.vault.storage;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Per-blob data keys wrapped (AES Key Wrap, RFC 3394) with the configured master key. Only the
+ * wrapped form is ever persisted, next to the blob it protects.
+ */
+@Component
+public class EnvelopeEncryption {
+
+    @Getter
+    private final boolean enabled;
+
+    @Getter
+    private final int segmentSize;
+
+    private final SecretKey masterKey;
+
+    public EnvelopeEncryption(@Value("${file.encryption.enabled:true}") boolean enabled,
+                              @Value("${file.encryption.master-key:}") String masterKey,
+                              @Value("${file.encryption.segment-size:65536}") int segmentSize) {
+        this.enabled = enabled;
+        this.segmentSize = segmentSize;
+        if (enabled && masterKey.isBlank()) {
+            throw new IllegalStateException("file.encryption.master-key must be set when encryption is enabled");
+        }
+        this.masterKey = masterKey.isBlank() ? null : new SecretKeySpec(Base64.getDecoder().decode(masterKey), "AES");
+    }
+
+    public SecretKey newDataKey() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            return generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES not available", e);
+        }
+    }
+
+    public String wrap(SecretKey dataKey) {
+        try {
+            Cipher cipher = Cipher.getInstance("AESWrap");
+            cipher.init(Cipher.WRAP_MODE, masterKey);
+            return Base64.getEncoder().encodeToString(cipher.wrap(dataKey));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not wrap data key", e);
+        }
+    }
+
+    public SecretKey unwrap(String wrappedKey) {
+        if (masterKey == null) throw new IllegalStateException("Encrypted blob found but no master key is configured");
+        try {
+            Cipher cipher = Cipher.getInstance("AESWrap");
+            cipher.init(Cipher.UNWRAP_MODE, masterKey);
+            return (SecretKey) cipher.unwrap(Base64.getDecoder().decode(wrappedKey), "AES", Cipher.SECRET_KEY);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not unwrap data key", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.shruthi.vault.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompressed view of gzip-stored content. Gzip has no random access, so reads decompress
+ * forward from the current position: sequential reads (a full download, a ZIP entry, a
+ * non-blocking writer) cost one pass, while a read behind the current position restarts from
+ * the beginning and a range far into the file decompresses everything before it.
+ */
+final class GzipContent implements StoredContent {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StoredContent encoded;
+    private final long size;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private InputStream in;
+    private long position;
+
+    /**
+     * @param size decompressed length
+     */
+    GzipContent(StoredContent encoded, long size) {
+        this.encoded = encoded;
+        this.size = size;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Optional<Path> plainFile() {
+        return Optional.empty();
+    }
+
+    @Override
+    public String encoding() {
+        return CompressionPolicy.GZIP;
+    }
+
+    @Override
+    public StoredContent encoded() {
+        return encoded;
+    }
+
+    @Override
+    public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        seek(position);
+        while (count > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, count));
+            if (n < 0) break;
+            this.position += n;
+            count -= n;
+            ByteBuffer slice = ByteBuffer.wrap(buffer, 0, n);
+            while (slice.hasRemaining()) target.write(slice);
+        }
+    }
+
+    @Override
+    public int read(long position, ByteBuffer target) throws IOException {
+        if (position >= size) return -1;
+        seek(position);
+        int n = in.read(buffer, 0, Math.min(buffer.length, target.remaining()));
+        if (n > 0) {
+            target.put(buffer, 0, n);
+            this.position += n;
+        }
+        return n;
+    }
+
+    private void seek(long target) throws IOException {
+        if (in == null || target < position) {
+            if (in != null) in.close();
+            in = new GZIPInputStream(new EncodedStream(encoded), BUFFER_SIZE);
+            position = 0;
+        }
+        in.skipNBytes(target - position);
+        position = target;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (in != null) in.close();
+        } finally {
+            encoded.close();
+        }
+    }
+
+    /**
+     * Sequential stream over the stored (compressed) bytes.
+     */
+    private static final class EncodedStream extends InputStream {
+
+        private final StoredContent content;
+        private long offset;
+
+        EncodedStream(StoredContent content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            int n = content.read(offset, ByteBuffer.wrap(b, off, len));
+            if (n > 0) offset += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.shruthi.vault.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Content of small, frequently opened blobs, kept decoded in direct (off-heap) buffers so repeat
+ * downloads of hot files skip the file system, decryption and decompression, and add nothing to
+ * the heap. A blob is admitted once it has been opened {@code admit-after} times within
+ * {@code access-window}; entries are bounded by {@code max-memory} and evicted by W-TinyLFU.
+ * Gzip-stored blobs keep their stored form too, for clients that accept it.
+ * <p>
+ * Entries are keyed by storage key, i.e. by content hash, so they can't go stale: an overwrite
+ * stores the new content under a new key, and the engine drops an entry when its blob is deleted.
+ * Buffers are never freed explicitly, so a download still reading an evicted entry is safe; the
+ * memory goes back when the collector reclaims the buffer, so {@code -XX:MaxDirectMemorySize}
+ * (by default the max heap size) must leave room beyond {@code max-memory}.
+ */
+@Component
+public class HotContentCache {
+
+    // Rough size of an entry besides its buffers: key, entry, buffer objects, cache node
+    private static final int ENTRY_OVERHEAD = 256;
+
+    @Getter
+    private final boolean enabled;
+    private final long maxFileSize;
+    private final int admitAfter;
+    private final Cache<String, Entry> entries;
+    // storage key -> opens so far, for blobs not (yet) admitted
+    private final Cache<String, AtomicInteger> opens;
+
+    public HotContentCache(@Value("${file.hot-cache.enabled:true}") boolean enabled,
+                           @Value("${file.hot-cache.max-memory:64MB}") DataSize maxMemory,
+                           @Value("${file.hot-cache.max-file-size:256KB}") DataSize maxFileSize,
+                           @Value("${file.hot-cache.admit-after:2}") int admitAfter,
+                           @Value("${file.hot-cache.access-window:10m}") Duration accessWindow,
+                           MeterRegistry registry) {
+        this.enabled = enabled;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.admitAfter = admitAfter;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((String key, Entry entry) -> entry.weight())
+                .recordStats()
+                .build();
+        this.opens = Caffeine.newBuilder().maximumSize(100_000).expireAfterWrite(accessWindow).build();
+
+        CaffeineCacheMetrics.monitor(registry, entries, "storage.hot-content");
+        Gauge.builder("vault.storage.hot-content.memory", entries,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Whether content of this decoded and stored size is small enough to be kept.
+     */
+    boolean fits(long size, long storedSize) {
+        return enabled && size <= maxFileSize && storedSize <= maxFileSize;
+    }
+
+    /**
+     * The cached content, or null.
+     */
+    StoredContent get(String storageKey) {
+        Entry entry = entries.getIfPresent(storageKey);
+        return entry == null ? null : entry.open();
+    }
+
+    /**
+     * Counts an open of content that isn't cached.
+     *
+     * @return true if it has now been opened often enough to be cached
+     */
+    boolean admit(String storageKey) {
+        return opens.get(storageKey, key -> new AtomicInteger()).incrementAndGet() >= admitAfter;
+    }
+
+    /**
+     * Reads the opened content into memory and closes it.
+     *
+     * @return the cached copy, to be read in its place
+     */
+    StoredContent load(String storageKey, StoredContent content) throws IOException {
+        Entry entry;
+        try (content) {
+            String encoding = content.encoding();
+            entry = new Entry(readAll(content), encoding, encoding == null ? null : readAll(content.encoded()));
+        }
+        // A concurrent load of the same key read the same bytes; keep whichever got there first
+        Entry existing = entries.asMap().putIfAbsent(storageKey, entry);
+        opens.invalidate(storageKey);
+        return (existing != null ? existing : entry).open();
+    }
+
+    void invalidate(String storageKey) {
+        entries.invalidate(storageKey);
+        opens.invalidate(storageKey);
+    }
+
+    private static ByteBuffer readAll(StoredContent content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(content.size()));
+        while (buffer.hasRemaining()) {
+            if (content.read(buffer.position(), buffer) < 0) throw new EOFException("Stored content shorter than its size");
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private record Entry(ByteBuffer decoded, String encoding, ByteBuffer encoded) {
+
+        int weight() {
+            return ENTRY_OVERHEAD + decoded.capacity() + (encoded == null ? 0 : encoded.capacity());
+        }
+
+        StoredContent open() {
+            return new CachedContent(decoded, encoding, encoded == null ? null : new CachedContent(encoded, null, null));
+        }
+    }
+
+    /**
+     * Reads straight from the shared buffer; every read works on its own slice, so any number of
+     * downloads can read one entry at once.
+     */
+    private static final class CachedContent implements StoredContent {
+
+        private final ByteBuffer data;
+        private final String encoding;
+        private final StoredContent encoded;
+
+        CachedContent(ByteBuffer data, String encoding, StoredContent encoded) {
+            this.data = data;
+            this.encoding = encoding;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public long size() {
+            return data.limit();
+        }
+
+        @Override
+        public Optional<Path> plainFile() {
+            return Optional.empty();
+        }
+
+        @Override
+        public String encoding() {
+            return encoding;
+        }
+
+        @Override
+        public StoredContent encoded() {
+            return encoded != null ? encoded : this;
+        }
+
+        @Override
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            if (position >= size()) return;
+            ByteBuffer slice = data.slice((int) position, (int) Math.min(count, size() - position));
+            while (slice.hasRemaining()) target.write(slice);
+        }
+
+        @Override
+        public int read(long position, ByteBuffer target) {
+            if (position >= size()) return -1;
+            int n = (int) Math.min(target.remaining(), size() - position);
+            target.put(data.slice((int) position, n));
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
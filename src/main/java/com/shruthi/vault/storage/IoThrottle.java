@@ -0,0 +1,32 @@
+package com.shruthi.vault.storage;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces background work to a fixed number of operations per second (a file stat or delete, a
+ * row lookup), so maintenance never competes with requests for the disk or the database at
+ * full speed. Permits are handed out at even intervals; unused time is not saved up.
+ */
+public class IoThrottle {
+
+    private final long intervalNanos;
+    private long next = System.nanoTime();
+
+    public IoThrottle(double operationsPerSecond) {
+        this.intervalNanos = operationsPerSecond <= 0 ? 0 : (long) (1_000_000_000L / operationsPerSecond);
+    }
+
+    public void acquire() {
+        acquire(1);
+    }
+
+    public synchronized void acquire(int operations) {
+        if (intervalNanos == 0) return;
+        long now = System.nanoTime();
+        if (next > now) {
+            LockSupport.parkNanos(next - now);
+            now = System.nanoTime();
+        }
+        next = Math.max(next, now) + intervalNanos * operations;
+    }
+}
@@ -0,0 +1,20 @@
+package com.shruthi.vault.storage;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Content can't be assembled because some of its chunks aren't stored (anymore).
+ */
+@Getter
+public class MissingChunksException extends IOException {
+
+    private final List<String> missing;
+
+    public MissingChunksException(List<String> missing) {
+        super(missing.size() + " chunks are not stored");
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,13 @@
+package com.shruthi.vault.storage;
+
+/**
+ * What {@link StorageEngine#reclaimOrphans} removed.
+ *
+ * @param manifests  chunk manifests no file referenced
+ * @param blobs      blob rows (and their files) no file or manifest referenced
+ * @param strayFiles blob files without a blob row
+ * @param tempFiles  temp files left by interrupted writes
+ * @param bytes      disk space freed
+ */
+public record OrphanSweep(int manifests, int blobs, int strayFiles, int tempFiles, long bytes) {
+}
@@ -0,0 +1,226 @@
+package com.shruthi.vault.storage;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Streaming AES-GCM in fixed-size segments, so content of any size is encrypted and decrypted
+ * with constant memory and a byte range can be read by decrypting only the segments it covers.
+ *
+ * <pre>
+ * header:  "SFV1" | segment size (int) | nonce prefix (8 bytes)
+ * segment: ciphertext (segment size bytes, last one shorter) | GCM tag (16 bytes)
+ * </pre>
+ *
+ * Each segment's nonce is the prefix plus its index, and its index and a last-segment flag are
+ * bound in as associated data, so segments can't be reordered, dropped or the file truncated
+ * without failing authentication.
+ */
+public final class SegmentedGcm {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    static final int HEADER_SIZE = 16;
+    static final int TAG_SIZE = 16;
+    private static final byte[] MAGIC = {'S', 'F', 'V', '1'};
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private SegmentedGcm() {
+    }
+
+    public static OutputStream encryptingStream(OutputStream out, SecretKey key, int segmentSize) throws IOException {
+        return new EncryptingStream(out, key, segmentSize);
+    }
+
+    private static Cipher cipher(int mode, SecretKey key, byte[] noncePrefix, long index, boolean last) {
+        try {
+            byte[] nonce = ByteBuffer.allocate(12).put(noncePrefix).putInt((int) index).array();
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(mode, key, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+            cipher.updateAAD(ByteBuffer.allocate(9).putLong(index).put((byte) (last ? 1 : 0)).array());
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    }
+
+    /**
+     * Holds back one full segment so the final segment can be flagged as such on close.
+     */
+    private static final class EncryptingStream extends OutputStream {
+
+        private final OutputStream out;
+        private final SecretKey key;
+        private final byte[] noncePrefix = new byte[8];
+        private final byte[] buffer;
+        private final byte[] sealed;
+        private int buffered;
+        private long index;
+        private boolean closed;
+
+        EncryptingStream(OutputStream out, SecretKey key, int segmentSize) throws IOException {
+            this.out = out;
+            this.key = key;
+            this.buffer = new byte[segmentSize];
+            this.sealed = new byte[segmentSize + TAG_SIZE];
+            RANDOM.nextBytes(noncePrefix);
+            out.write(ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).putInt(segmentSize).put(noncePrefix).array());
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (buffered == buffer.length) {
+                    seal(false);
+                }
+                int n = Math.min(len, buffer.length - buffered);
+                System.arraycopy(b, off, buffer, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            try {
+                int n = cipher(Cipher.ENCRYPT_MODE, key, noncePrefix, index++, last).doFinal(buffer, 0, buffered, sealed, 0);
+                out.write(sealed, 0, n);
+                buffered = 0;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Encryption failed", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                seal(true);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Random-access decryption of an encrypted file. Not thread-safe: it keeps the last
+     * decrypted segment so sequential reads smaller than a segment decrypt it only once.
+     */
+    public static final class Reader {
+
+        private final FileChannel channel;
+        private final SecretKey key;
+        private final int segmentSize;
+        private final byte[] noncePrefix = new byte[8];
+        private final long segments;
+        private final long plaintextSize;
+
+        private final ByteBuffer sealed;
+        private final byte[] plain;
+        private long plainIndex = -1;
+        private int plainLength;
+
+        public Reader(FileChannel channel, SecretKey key) throws IOException {
+            this.channel = channel;
+            this.key = key;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // keep reading until the header is complete
+            }
+            header.flip();
+            if (header.limit() < HEADER_SIZE) {
+                throw new IOException("Not an encrypted blob");
+            }
+            byte[] magic = new byte[4];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not an encrypted blob");
+            }
+            this.segmentSize = header.getInt();
+            header.get(noncePrefix);
+
+            long body = channel.size() - HEADER_SIZE;
+            // Even empty content has one (empty) sealed segment
+            if (body < TAG_SIZE) throw new IOException("Truncated blob");
+            this.segments = Math.max(1, (body + segmentSize + TAG_SIZE - 1) / (segmentSize + TAG_SIZE));
+            this.plaintextSize = body - segments * TAG_SIZE;
+            this.sealed = ByteBuffer.allocate(segmentSize + TAG_SIZE);
+            this.plain = new byte[segmentSize];
+        }
+
+        public long size() {
+            return plaintextSize;
+        }
+
+        /**
+         * Decrypts plaintext bytes [position, position + count) into the target, touching only
+         * the segments that overlap the range.
+         */
+        public void transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            while (count > 0 && position < plaintextSize) {
+                int skip = decrypt(position / segmentSize, position);
+                int take = (int) Math.min(plainLength - skip, count);
+                ByteBuffer slice = ByteBuffer.wrap(plain, skip, take);
+                while (slice.hasRemaining()) target.write(slice);
+                position += take;
+                count -= take;
+            }
+        }
+
+        /**
+         * Decrypts plaintext starting at {@code position} into the target, up to its remaining
+         * space or the end of the segment holding {@code position}.
+         *
+         * @return bytes read, or -1 at end of content
+         */
+        public int read(long position, ByteBuffer target) throws IOException {
+            if (position >= plaintextSize) return -1;
+            int skip = decrypt(position / segmentSize, position);
+            int take = Math.min(plainLength - skip, target.remaining());
+            target.put(plain, skip, take);
+            return take;
+        }
+
+        /**
+         * Makes segment {@code index} the current plaintext.
+         *
+         * @return offset of {@code position} within it
+         */
+        private int decrypt(long index, long position) throws IOException {
+            if (index != plainIndex) {
+                sealed.clear();
+                long offset = HEADER_SIZE + index * (segmentSize + TAG_SIZE);
+                int length = (int) Math.min(segmentSize + TAG_SIZE, channel.size() - offset);
+                sealed.limit(length);
+                while (sealed.hasRemaining()) {
+                    if (channel.read(sealed, offset + sealed.position()) < 0) throw new IOException("Truncated blob");
+                }
+
+                plainIndex = -1;
+                try {
+                    plainLength = cipher(Cipher.DECRYPT_MODE, key, noncePrefix, index, index == segments - 1)
+                            .doFinal(sealed.array(), 0, length, plain, 0);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException("Blob segment " + index + " failed authentication", e);
+                }
+                plainIndex = index;
+            }
+            return (int) (position - index * segmentSize);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.shruthi.vault.storage;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where a blob's file lives under the blob root: {@code depth} directory levels named by
+ * successive {@code width}-character slices of its hash, then the file named by the full hash.
+ * The default 2 x 2 ({@code ab/cd/abcd...}) spreads files over 65,536 leaf directories, about
+ * 150 files each at 10 million blobs; depth 0 is a single flat directory.
+ */
+public record ShardLayout(int depth, int width) {
+
+    static final int MAX_DEPTH = 3;
+    static final int MAX_WIDTH = 3;
+
+    public ShardLayout {
+        if (depth < 0 || depth > MAX_DEPTH || width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Shard layout must have a depth of 0 to " + MAX_DEPTH
+                    + " and a width of 1 to " + MAX_WIDTH + ", got " + depth + " x " + width);
+        }
+    }
+
+    public Path locate(Path root, String hash) {
+        Path dir = root;
+        for (int level = 0; level < depth; level++) {
+            dir = dir.resolve(hash.substring(level * width, (level + 1) * width));
+        }
+        return dir.resolve(hash);
+    }
+
+    /**
+     * Every other layout a blob might have been written under by an earlier configuration.
+     */
+    List<ShardLayout> alternatives() {
+        List<ShardLayout> layouts = new ArrayList<>();
+        if (depth != 0) layouts.add(new ShardLayout(0, 1));
+        for (int d = 1; d <= MAX_DEPTH; d++) {
+            for (int w = 1; w <= MAX_WIDTH; w++) {
+                if (d != depth || w != width) layouts.add(new ShardLayout(d, w));
+            }
+        }
+        return layouts;
+    }
+}
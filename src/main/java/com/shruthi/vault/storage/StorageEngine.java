@@ -0,0 +1,115 @@
+package com.shruthi.vault.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Physical storage behind {@code FileRecord.storagePath}. Callers only ever hold the
+ * storage key returned from {@link #store}; where and how the bytes live is up to the engine.
+ */
+public interface StorageEngine {
+
+    /**
+     * Streams the content into storage, taking one reference on the stored blob. The content
+     * type only guides how it is stored (e.g. whether it is compressed).
+     */
+    StoredBlob store(InputStream content, String contentType) throws IOException;
+
+    /**
+     * Takes ownership of an already written file (e.g. an assembled chunked upload),
+     * taking one reference on the stored blob. The source file is moved or removed.
+     */
+    StoredBlob importFile(Path source, String contentType) throws IOException;
+
+    /**
+     * Chunk sync: which of the chunks (hex SHA-256 hashes) are not stored. Chunks of
+     * {@code baseStorageKey}, if given, count as stored without being looked up. Stored chunks
+     * may belong to anyone: callers only ask about chunks the user has shown they hold.
+     *
+     * @return the missing hashes, in the order given, without repeats
+     */
+    Set<String> missingChunks(Collection<String> chunkHashes, String baseStorageKey) throws IOException;
+
+    /**
+     * Chunk sync: the chunks (hex SHA-256 hashes) the content under these keys is made of, a
+     * chunked content's chunks or a single blob's own hash. Legacy plain files and content
+     * that is gone have none.
+     */
+    Set<String> chunksOf(Collection<String> storageKeys);
+
+    /**
+     * Chunk sync: stores one chunk after checking it against its hash, without taking a
+     * reference; it is kept for a later {@link #assemble} (or until swept as unreferenced).
+     *
+     * @return false if the chunk was already stored
+     */
+    boolean putChunk(String chunkHash, byte[] content, int length, String contentType) throws IOException;
+
+    /**
+     * Chunk sync: stores the content made of these chunks, in order, taking one reference on it.
+     *
+     * @throws MissingChunksException if any of the chunks isn't stored
+     */
+    StoredBlob assemble(List<String> chunkHashes) throws IOException;
+
+    /**
+     * Adds a reference to content that is already stored under the given key.
+     */
+    void retain(String storageKey);
+
+    /**
+     * Drops one reference; the bytes are removed once nothing references them.
+     *
+     * @return disk space freed (0 while the content is still referenced)
+     */
+    long release(String storageKey) throws IOException;
+
+    /**
+     * Opens stored content for reading, decrypting and decompressing it as needed; the stored
+     * form stays reachable through {@link StoredContent#encoded()}.
+     */
+    StoredContent open(String storageKey) throws IOException;
+
+    /**
+     * Of the given keys, those whose content is no longer stored (records left dangling by
+     * a crash or by files removed outside the application).
+     */
+    Set<String> findMissing(Collection<String> storageKeys, IoThrottle throttle) throws IOException;
+
+    /**
+     * Removes stored content nothing references and leftovers of interrupted writes, when last
+     * written before {@code cutoff} (younger ones may belong to a write still in progress).
+     */
+    OrphanSweep reclaimOrphans(LocalDateTime cutoff, IoThrottle throttle) throws IOException;
+
+    /**
+     * Corrects the reference counts of blobs and manifests whose hash starts with
+     * {@code hashPrefix} that don't match what references them (a crash between a row change
+     * and its release, say): file rows, counted by {@code references} per storage key, and
+     * chunk manifests. Counts that went too high are then reclaimed as orphans.
+     *
+     * @return the number of counts corrected
+     */
+    int reconcileReferences(String hashPrefix, Function<Collection<String>, Map<String, Long>> references,
+                            IoThrottle throttle) throws IOException;
+
+    /**
+     * Moves stored files written under an earlier layout to where the current one puts them.
+     * Safe while serving: content stays readable throughout.
+     *
+     * @return files moved
+     */
+    int relocate(IoThrottle throttle) throws IOException;
+
+    /**
+     * The file holding the content, or null for content spread over several files (chunked).
+     */
+    Path resolve(String storageKey);
+}
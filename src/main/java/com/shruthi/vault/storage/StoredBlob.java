@@ -0,0 +1,15 @@
+package com.shruthi.vault.storage;
+
+/**
+ * Result of writing content through a {@link StorageEngine}.
+ *
+ * @param storageKey   value to keep in {@code FileRecord.storagePath}
+ * @param contentHash  hex SHA-256 of the content
+ * @param size         content length in bytes
+ * @param deduplicated true if identical content was already stored and only a reference was added
+ * @param encoding     content coding it is stored with ({@code gzip}), or null if stored as is
+ * @param storedSize   bytes it takes on disk
+ */
+public record StoredBlob(String storageKey, String contentHash, long size, boolean deduplicated,
+                         String encoding, long storedSize) {
+}
@@ -0,0 +1,53 @@
+package com.shruthi.vault.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Readable view of stored content, independent of how it is kept on disk. Must be closed.
+ */
+public interface StoredContent extends Closeable {
+
+    /**
+     * Length of the content as the client sees it.
+     */
+    long size();
+
+    /**
+     * The file holding the content verbatim, when there is one; only then can it be sent with
+     * sendfile or {@code FileChannel.transferTo}.
+     */
+    Optional<Path> plainFile();
+
+    /**
+     * Writes content bytes [position, position + count) to the target.
+     */
+    void transferTo(long position, long count, WritableByteChannel target) throws IOException;
+
+    /**
+     * Reads content starting at {@code position} into the buffer, for callers that write out at
+     * their own pace (non-blocking responses). May return fewer bytes than the buffer has room for.
+     *
+     * @return bytes read, or -1 at end of content
+     */
+    int read(long position, ByteBuffer target) throws IOException;
+
+    /**
+     * Content coding (e.g. {@code gzip}) of {@link #encoded()}, or null if it is stored as is.
+     */
+    default String encoding() {
+        return null;
+    }
+
+    /**
+     * The content as stored, before decoding; can be sent as is with a matching
+     * {@code Content-Encoding}. Closing either view closes both.
+     */
+    default StoredContent encoded() {
+        return this;
+    }
+}
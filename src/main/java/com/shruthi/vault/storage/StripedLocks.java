@@ -0,0 +1,56 @@
+package com.shruthi.vault.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks selected by key hash, so unrelated keys rarely contend
+ * and no per-key lock objects have to be created or cleaned up.
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) locks[i] = new ReentrantLock();
+    }
+
+    public ReentrantLock get(Object key) {
+        return locks[indexOf(key)];
+    }
+
+    /**
+     * The stripes of several keys, each once, in stripe order. Taking them in the order given
+     * can't deadlock with other holders of several stripes or with {@link #lockAll}.
+     */
+    public List<ReentrantLock> getAll(Collection<?> keys) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Object key : keys) indexes.add(indexOf(key));
+        List<ReentrantLock> stripes = new ArrayList<>(indexes.size());
+        for (int index : indexes) stripes.add(locks[index]);
+        return stripes;
+    }
+
+    private int indexOf(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (locks.length - 1);
+    }
+
+    /**
+     * Takes every stripe, in a fixed order, for operations on an unbounded set of keys at once.
+     * Other holders take their stripes in the same order, so this can't deadlock with them.
+     */
+    public void lockAll() {
+        for (ReentrantLock lock : locks) lock.lock();
+    }
+
+    public void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) locks[i].unlock();
+    }
+}
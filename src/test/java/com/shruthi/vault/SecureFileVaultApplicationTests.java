@@ -2,10 +2,23 @@ package com.shruthi.vault;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.security.SecureRandom;
+import java.util.Base64;
 
 @SpringBootTest
 class SecureFileVaultApplicationTests {
 
+	// The master key has no default; a throwaway one per run
+	@DynamicPropertySource
+	static void masterKey(DynamicPropertyRegistry registry) {
+		byte[] key = new byte[32];
+		new SecureRandom().nextBytes(key);
+		registry.add("file.encryption.master-key", () -> Base64.getEncoder().encodeToString(key));
+	}
+
 	@Test
 	void contextLoads() {
 	}
@@ -0,0 +1,195 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.model.UploadChunk;
+import com.shruthi.vault.model.UploadSession;
+import com.shruthi.vault.model.User;
+import com.shruthi.vault.repository.FileRecordRepository;
+import com.shruthi.vault.repository.UploadChunkRepository;
+import com.shruthi.vault.repository.UploadSessionRepository;
+import com.shruthi.vault.repository.UserRepository;
+import com.shruthi.vault.storage.StorageEngine;
+import com.shruthi.vault.storage.StoredBlob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Chunks may arrive in any order and more than once; the file is only published once every
+ * chunk is in, with exactly the bytes of the original. Chunk rows are an in-memory map and
+ * the storage engine records what it was handed.
+ */
+class ChunkedUploadServiceTest {
+
+    private static final long OWNER = 7L;
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+    private static final int CHUNK_SIZE = 4;
+
+    @TempDir
+    Path uploadDir;
+
+    private final Map<Integer, Long> chunks = new ConcurrentSkipListMap<>();
+    private final AtomicReference<byte[]> imported = new AtomicReference<>();
+    private final User owner = User.builder().id(OWNER).username("alice").usedBytes(0L).fileCount(0L).build();
+
+    private UploadSessionRepository sessions;
+    private UploadChunkRepository chunkRows;
+    private StorageEngine storageEngine;
+    private FileVersionService fileVersionService;
+    private UsageService usageService;
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sessions = mock(UploadSessionRepository.class);
+        when(sessions.save(any(UploadSession.class))).thenAnswer(call -> call.getArgument(0));
+
+        chunkRows = mock(UploadChunkRepository.class);
+        when(chunkRows.existsBySessionIdAndChunkIndex(anyString(), anyInt())).thenAnswer(call -> chunks.containsKey(call.<Integer>getArgument(1)));
+        when(chunkRows.save(any(UploadChunk.class))).thenAnswer(call -> {
+            UploadChunk chunk = call.getArgument(0);
+            assertNull(chunks.put(chunk.getChunkIndex(), chunk.getSize()), "chunk " + chunk.getChunkIndex() + " recorded twice");
+            return chunk;
+        });
+        when(chunkRows.countBySessionId(anyString())).thenAnswer(call -> (long) chunks.size());
+        when(chunkRows.sumSizes(anyString())).thenAnswer(call -> chunks.values().stream().mapToLong(Long::longValue).sum());
+        when(chunkRows.findChunkIndexes(anyString())).thenAnswer(call -> List.copyOf(chunks.keySet()));
+        doAnswer(call -> {
+            chunks.clear();
+            return null;
+        }).when(chunkRows).deleteBySessionId(anyString());
+
+        storageEngine = mock(StorageEngine.class);
+        when(storageEngine.importFile(any(Path.class), any())).thenAnswer(call -> {
+            Path source = call.getArgument(0);
+            imported.set(Files.readAllBytes(source));
+            Files.delete(source);
+            return new StoredBlob("sha256/abc", "abc", CONTENT.length, false, null, CONTENT.length);
+        });
+
+        fileVersionService = mock(FileVersionService.class);
+        when(fileVersionService.publish(anyLong(), anyString(), any(StoredBlob.class), any(), anyBoolean()))
+                .thenAnswer(call -> FileRecord.builder().id(1L).filename(call.getArgument(1)).size((long) CONTENT.length).build());
+
+        UserRepository users = mock(UserRepository.class);
+        when(users.findById(OWNER)).thenReturn(Optional.of(owner));
+        usageService = new UsageService(users, mock(FileRecordRepository.class), mock(PlatformTransactionManager.class), DataSize.ofBytes(CONTENT.length));
+
+        service = new ChunkedUploadService(sessions, chunkRows, storageEngine, fileVersionService, mock(FileMetadataCache.class), usageService);
+        ReflectionTestUtils.setField(service, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(service, "maxChunks", 3);
+        ReflectionTestUtils.setField(service, "maxUploadSize", DataSize.ofBytes(CONTENT.length));
+    }
+
+    @Test
+    void outOfOrderAndRepeatedChunksAssembleTheOriginalBytes() throws IOException {
+        UploadSession session = service.init(owner, "notes.txt", CONTENT.length, CHUNK_SIZE, false);
+        assertEquals(3, session.getTotalChunks());
+
+        assertEquals(2, write(session, 2));
+        assertEquals(4, write(session, 0));
+        assertFalse(service.isComplete(session));
+        // A retry of a chunk that already arrived rewrites the same bytes and is counted once
+        assertEquals(4, write(session, 0));
+        assertEquals(2, write(session, 2));
+        assertFalse(service.isComplete(session));
+        assertEquals(List.of(0, 2), service.toResponse(session).getReceivedChunks());
+
+        assertEquals(4, write(session, 1));
+        assertTrue(service.isComplete(session));
+        assertEquals(CONTENT.length, service.toResponse(session).getReceivedBytes());
+        // Every chunk keeps the session from expiring
+        verify(sessions, times(5)).touch(eq(session.getId()), any());
+
+        FileRecord record = service.commit(session, "text/plain");
+        assertEquals("notes.txt", record.getFilename());
+        assertArrayEquals(CONTENT, imported.get());
+        verify(fileVersionService).publish(eq(OWNER), eq("notes.txt"), any(StoredBlob.class), eq("text/plain"), eq(false));
+        verify(sessions).delete(session);
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    void shortChunkIsNotCountedSoTheSessionCannotComplete() throws IOException {
+        UploadSession session = service.init(owner, "notes.txt", CONTENT.length, CHUNK_SIZE, false);
+        write(session, 0);
+        write(session, 1);
+
+        // The body ends one byte early: the bytes land, but the chunk is not recorded
+        byte[] lastChunk = Arrays.copyOfRange(CONTENT, 8, 9);
+        assertEquals(1, service.writeChunk(session, 2, new ByteArrayInputStream(lastChunk)));
+        assertFalse(service.isComplete(session));
+        assertEquals(8, service.toResponse(session).getReceivedBytes());
+        assertEquals(List.of(0, 1), service.toResponse(session).getReceivedChunks());
+
+        assertEquals(2, write(session, 2));
+        assertTrue(service.isComplete(session));
+    }
+
+    @Test
+    void commitRechecksTheSizeAgainstTheQuotaAndKeepsTheSession() throws IOException {
+        UploadSession session = service.init(owner, "notes.txt", CONTENT.length, CHUNK_SIZE, false);
+        for (int index = 0; index < session.getTotalChunks(); index++) {
+            write(session, index);
+        }
+        // Another upload committed meanwhile and took part of the room
+        usageService.record(OWNER, 1, 1);
+
+        assertThrows(QuotaExceededException.class, () -> service.commit(session, "text/plain"));
+        verifyNoInteractions(storageEngine, fileVersionService);
+        verify(sessions, never()).delete(any());
+        assertTrue(service.isComplete(session));
+        assertTrue(Files.exists(Paths.get(session.getPartPath())));
+    }
+
+    @Test
+    void sessionsTooLargeOrWithTooManyChunksAreRefusedBeforeAllocating() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> service.init(owner, "notes.txt", CONTENT.length + 1, CHUNK_SIZE, false));
+        assertThrows(IllegalArgumentException.class, () -> service.init(owner, "notes.txt", CONTENT.length, 3, false));
+        assertThrows(IllegalArgumentException.class, () -> service.init(owner, "notes.txt", CONTENT.length, 0, false));
+
+        verifyNoInteractions(sessions);
+        assertFalse(Files.exists(uploadDir.resolve(".partial")));
+    }
+
+    @Test
+    void abortRemovesThePartialFileAndChunkRows() throws IOException {
+        UploadSession session = service.init(owner, "notes.txt", CONTENT.length, CHUNK_SIZE, false);
+        write(session, 1);
+        Path part = Paths.get(session.getPartPath());
+        assertTrue(Files.exists(part));
+
+        service.abort(session);
+
+        assertFalse(Files.exists(part));
+        assertTrue(chunks.isEmpty());
+        verify(sessions).delete(session);
+        verifyNoInteractions(storageEngine, fileVersionService);
+    }
+
+    private long write(UploadSession session, int index) throws IOException {
+        int from = (int) session.offsetOf(index);
+        byte[] body = Arrays.copyOfRange(CONTENT, from, from + (int) session.lengthOf(index));
+        return service.writeChunk(session, index, new ByteArrayInputStream(body));
+    }
+}
@@ -0,0 +1,157 @@
+package com.shruthi.vault.service;
+
+import com.shruthi.vault.model.FileRecord;
+import com.shruthi.vault.repository.FileRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Uploads, overwrites and deletes must be visible to the next lookup, however lookups and
+ * writes interleave. The repository is an in-memory row with a slow, jittery query, so loads
+ * regularly straddle writes.
+ */
+class FileMetadataCacheTest {
+
+    private static final long OWNER = 7L;
+    private static final String NAME = "report.pdf";
+
+    private final AtomicReference<FileRecord> row = new AtomicReference<>();
+    private FileRecordRepository repository;
+    private FileMetadataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(FileRecordRepository.class);
+        when(repository.findTopByFilenameAndOwnerIdAndDeletedFalse(anyString(), anyLong())).thenAnswer(call -> {
+            FileRecord current = row.get();
+            // The row is read at the start of the query and returned at the end, like a real round trip
+            if (ThreadLocalRandom.current().nextInt(4) == 0) Thread.sleep(0, ThreadLocalRandom.current().nextInt(200_000));
+            return current;
+        });
+        cache = new FileMetadataCache(repository, new SimpleMeterRegistry(), true, DataSize.ofMegabytes(1), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void uploadOverwriteAndDeleteAreVisibleToTheNextLookup() {
+        assertNull(cache.find(OWNER, NAME));
+        assertNull(cache.find(OWNER, NAME));
+        verify(repository, times(1)).findTopByFilenameAndOwnerIdAndDeletedFalse(NAME, OWNER);
+
+        write(1);
+        assertEquals(1, cache.find(OWNER, NAME).getVersion());
+        write(2);
+        assertEquals(2, cache.find(OWNER, NAME).getVersion());
+        assertEquals(2, cache.find(OWNER, NAME).getVersion());
+        verify(repository, times(3)).findTopByFilenameAndOwnerIdAndDeletedFalse(NAME, OWNER);
+
+        delete();
+        assertNull(cache.find(OWNER, NAME));
+
+        write(3);
+        cache.invalidateOwner(OWNER);
+        assertEquals(3, cache.find(OWNER, NAME).getVersion());
+    }
+
+    @Test
+    void callersCannotChangeTheCachedRecord() {
+        write(1);
+        cache.find(OWNER, NAME).setStoragePath("changed");
+        cache.find(OWNER, NAME).setVersion(99);
+        FileRecord found = cache.find(OWNER, NAME);
+        assertEquals("sha256/1", found.getStoragePath());
+        assertEquals(1, found.getVersion());
+    }
+
+    /**
+     * State n of the file is version n, except every fifth state, which is deleted. A lookup
+     * must return a state at least as new as the last one committed before it started, and
+     * no newer than the one being written when it ended.
+     */
+    @Test
+    void concurrentLookupsNeverSeeMetadataOlderThanTheLastCommittedWrite() throws Exception {
+        int states = 5_000;
+        AtomicInteger committed = new AtomicInteger(0);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        List<Future<Integer>> readers = new ArrayList<>();
+        try {
+            for (int r = 0; r < 4; r++) {
+                readers.add(pool.submit(() -> {
+                    int lookups = 0;
+                    while (writing.get()) {
+                        int before = committed.get();
+                        FileRecord found = cache.find(OWNER, NAME);
+                        int after = committed.get() + 1;
+                        if (found == null) {
+                            assertTrue(deletedStateBetween(before, after), "deleted seen, but states " + before + ".." + after + " all exist");
+                        } else {
+                            int version = found.getVersion();
+                            assertTrue(version >= before && version <= after, "version " + version + " seen in " + before + ".." + after);
+                        }
+                        lookups++;
+                    }
+                    return lookups;
+                }));
+            }
+            pool.submit(() -> {
+                try {
+                    for (int n = 1; n <= states; n++) {
+                        if (n % 5 == 0) delete();
+                        else write(n);
+                        committed.set(n);
+                        // Lets readers see each state, including whatever a racing load cached
+                        if (n % 10 == 0) Thread.sleep(1);
+                    }
+                } finally {
+                    writing.set(false);
+                }
+                return null;
+            }).get(2, TimeUnit.MINUTES);
+            for (Future<Integer> reader : readers) assertTrue(reader.get(1, TimeUnit.MINUTES) > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+        // Once writes stop, the cache settles on the last state
+        assertNull(cache.find(OWNER, NAME));
+    }
+
+    private static boolean deletedStateBetween(int from, int to) {
+        if (from == 0) return true;
+        for (int n = from; n <= to; n++) {
+            if (n % 5 == 0) return true;
+        }
+        return false;
+    }
+
+    // Commit, then invalidate, as every writer does
+    private void write(int version) {
+        row.set(FileRecord.builder()
+                .id(1L)
+                .filename(NAME)
+                .storagePath("sha256/" + version)
+                .size(100L * version)
+                .version(version)
+                .build());
+        cache.invalidate(OWNER, NAME);
+    }
+
+    private void delete() {
+        row.set(null);
+        cache.invalidate(OWNER, NAME);
+    }
+}
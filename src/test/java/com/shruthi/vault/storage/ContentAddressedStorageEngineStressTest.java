@@ -0,0 +1,298 @@
+package com.shruthi.vault.storage;
+
+import com.shruthi.vault.model.Blob;
+import com.shruthi.vault.model.ChunkManifest;
+import com.shruthi.vault.repository.BlobRepository;
+import com.shruthi.vault.repository.ChunkManifestRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Many threads storing, reading and releasing overlapping content at once, against in-memory
+ * repositories with the same per-statement atomicity as the database. Every read must return
+ * exactly the content that was stored, and once every reference is released nothing may be left.
+ */
+class ContentAddressedStorageEngineStressTest {
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 200;
+
+    @TempDir
+    Path uploadDir;
+
+    private final Map<String, Blob> blobs = new ConcurrentHashMap<>();
+    private final Map<String, ChunkManifest> manifests = new ConcurrentHashMap<>();
+    private final List<byte[]> contents = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        // Single blobs, compressible text, chunked content, and chunked content sharing chunks
+        for (int i = 0; i < 4; i++) contents.add(randomBytes(random, 100 + random.nextInt(3000)));
+        for (int i = 0; i < 2; i++) contents.add(("line " + i + " of some compressible text\n").repeat(100).getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < 3; i++) contents.add(randomBytes(random, 10_000 + random.nextInt(30_000)));
+        byte[] shared = randomBytes(random, 30_000);
+        for (int i = 0; i < 2; i++) {
+            byte[] edited = shared.clone();
+            edited[15_000] ^= (byte) (i + 1);
+            contents.add(edited);
+        }
+    }
+
+    @Test
+    void concurrentWritersNeverSeeTornOrForeignContent() throws Exception {
+        ContentAddressedStorageEngine engine = newEngine(false);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            workers.add(pool.submit(() -> {
+                start.await();
+                Random random = new Random(seed);
+                List<StoredBlob> held = new ArrayList<>();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    byte[] content = contents.get(random.nextInt(contents.size()));
+                    StoredBlob blob = engine.store(new ByteArrayInputStream(content), "application/octet-stream");
+                    assertEquals(sha256(content), blob.contentHash());
+                    assertArrayEquals(content, read(engine, blob.storageKey()));
+                    held.add(blob);
+
+                    // Release some while other threads store and read the same content
+                    if (random.nextBoolean()) {
+                        StoredBlob released = held.remove(random.nextInt(held.size()));
+                        assertEquals(released.contentHash(), sha256(read(engine, released.storageKey())));
+                        engine.release(released.storageKey());
+                    }
+                }
+                for (StoredBlob blob : held) {
+                    assertEquals(blob.contentHash(), sha256(read(engine, blob.storageKey())));
+                    engine.release(blob.storageKey());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> worker : workers) worker.get(2, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(blobs.isEmpty(), "blob rows left: " + blobs.keySet());
+        assertTrue(manifests.isEmpty(), "manifests left: " + manifests.keySet());
+        assertEquals(List.of(), files(uploadDir.resolve("blobs")));
+        assertEquals(List.of(), files(uploadDir.resolve(".tmp")));
+    }
+
+    @Test
+    void concurrentIdenticalWritesShareOneSyncedBlob() throws Exception {
+        ContentAddressedStorageEngine engine = newEngine(true);
+        byte[] content = contents.get(0);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<StoredBlob>> writes = new ArrayList<>();
+        for (int t = 0; t < THREADS * 2; t++) {
+            writes.add(pool.submit(() -> {
+                start.await();
+                return engine.store(new ByteArrayInputStream(content), "application/octet-stream");
+            }));
+        }
+        start.countDown();
+        Set<String> keys = new HashSet<>();
+        try {
+            for (Future<StoredBlob> write : writes) keys.add(write.get(1, TimeUnit.MINUTES).storageKey());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        String hash = sha256(content);
+        assertEquals(Set.of(ContentAddressedStorageEngine.KEY_PREFIX + hash), keys);
+        assertEquals(THREADS * 2, blobs.get(hash).getRefCount());
+        assertEquals(1, files(uploadDir.resolve("blobs")).size());
+        assertEquals(List.of(), files(uploadDir.resolve(".tmp")));
+        assertArrayEquals(content, read(engine, keys.iterator().next()));
+    }
+
+    @Test
+    void nodesRacingToStoreTheSameContentKeepTheWinnersCopy() throws Exception {
+        // Two nodes: their own locks and caches, one database and one upload directory
+        BlobRepository shared = blobRepository();
+        CyclicBarrier bothChecked = new CyclicBarrier(2);
+        Map<String, Integer> checks = new ConcurrentHashMap<>();
+        when(shared.incrementRefCount(anyString())).thenAnswer(call -> {
+            String hash = call.getArgument(0);
+            // Both nodes find no row before either inserts one
+            if (checks.merge(hash, 1, Integer::sum) <= 2) bothChecked.await(10, TimeUnit.SECONDS);
+            return blobs.computeIfPresent(hash, (h, blob) -> withRefCount(blob, blob.getRefCount() + 1)) == null ? 0 : 1;
+        });
+        ContentAddressedStorageEngine first = newEngine(false, shared);
+        ContentAddressedStorageEngine second = newEngine(false, shared);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Random random = new Random(11);
+            for (int round = 0; round < 20; round++) {
+                // Under one maximum chunk and incompressible, so each node writes one encrypted blob
+                byte[] content = randomBytes(random, 2000);
+                Future<StoredBlob> onFirst = pool.submit(() -> first.store(new ByteArrayInputStream(content), "application/octet-stream"));
+                Future<StoredBlob> onSecond = pool.submit(() -> second.store(new ByteArrayInputStream(content), "application/octet-stream"));
+                StoredBlob stored = onFirst.get(1, TimeUnit.MINUTES);
+                assertEquals(stored.storageKey(), onSecond.get(1, TimeUnit.MINUTES).storageKey());
+                bothChecked.reset();
+
+                assertEquals(2, blobs.get(sha256(content)).getRefCount());
+                // A third node, with nothing cached, decrypts with the key on the row
+                assertArrayEquals(content, read(newEngine(false, shared), stored.storageKey()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(List.of(), files(uploadDir.resolve(".tmp")));
+    }
+
+    private ContentAddressedStorageEngine newEngine(boolean fsync) {
+        return newEngine(fsync, blobRepository());
+    }
+
+    private ContentAddressedStorageEngine newEngine(boolean fsync, BlobRepository blobRepository) {
+        byte[] masterKey = new byte[32];
+        new Random(7).nextBytes(masterKey);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new ContentAddressedStorageEngine(
+                blobRepository,
+                manifestRepository(),
+                new EnvelopeEncryption(true, Base64.getEncoder().encodeToString(masterKey), 4096),
+                new CompressionPolicy(true, 6, 65536, 1024, 0.9),
+                new ContentDefinedChunker(true, 1024),
+                // Admits small blobs on first open, so reads of released and re-stored content go through it
+                new HotContentCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(4), 1, Duration.ofMinutes(10), registry),
+                uploadDir.toString(),
+                fsync,
+                2,
+                2,
+                registry);
+    }
+
+    // Each method is one atomic statement, as the repository's queries are
+
+    private BlobRepository blobRepository() {
+        BlobRepository repository = mock(BlobRepository.class);
+        when(repository.incrementRefCount(anyString())).thenAnswer(call ->
+                blobs.computeIfPresent(call.getArgument(0), (hash, blob) -> withRefCount(blob, blob.getRefCount() + 1)) == null ? 0 : 1);
+        when(repository.decrementRefCount(anyString())).thenAnswer(call -> {
+            boolean[] changed = new boolean[1];
+            blobs.computeIfPresent(call.getArgument(0), (hash, blob) -> {
+                if (blob.getRefCount() <= 0) return blob;
+                changed[0] = true;
+                return withRefCount(blob, blob.getRefCount() - 1);
+            });
+            return changed[0] ? 1 : 0;
+        });
+        when(repository.deleteIfUnreferenced(anyString())).thenAnswer(call -> {
+            boolean[] deleted = new boolean[1];
+            blobs.computeIfPresent(call.getArgument(0), (hash, blob) -> {
+                deleted[0] = blob.getRefCount() <= 0;
+                return deleted[0] ? null : blob;
+            });
+            return deleted[0] ? 1 : 0;
+        });
+        when(repository.saveAndFlush(any(Blob.class))).thenAnswer(call -> {
+            Blob blob = call.getArgument(0);
+            if (blobs.putIfAbsent(blob.getHash(), blob) != null) throw new DataIntegrityViolationException(blob.getHash());
+            return blob;
+        });
+        when(repository.findById(anyString())).thenAnswer(call -> Optional.ofNullable(blobs.get(call.<String>getArgument(0))));
+        return repository;
+    }
+
+    private ChunkManifestRepository manifestRepository() {
+        ChunkManifestRepository repository = mock(ChunkManifestRepository.class);
+        when(repository.incrementRefCount(anyString())).thenAnswer(call ->
+                manifests.computeIfPresent(call.getArgument(0), (hash, manifest) -> withRefCount(manifest, manifest.getRefCount() + 1)) == null ? 0 : 1);
+        when(repository.decrementRefCount(anyString())).thenAnswer(call -> {
+            boolean[] changed = new boolean[1];
+            manifests.computeIfPresent(call.getArgument(0), (hash, manifest) -> {
+                if (manifest.getRefCount() <= 0) return manifest;
+                changed[0] = true;
+                return withRefCount(manifest, manifest.getRefCount() - 1);
+            });
+            return changed[0] ? 1 : 0;
+        });
+        when(repository.deleteIfUnreferenced(anyString())).thenAnswer(call -> {
+            boolean[] deleted = new boolean[1];
+            manifests.computeIfPresent(call.getArgument(0), (hash, manifest) -> {
+                deleted[0] = manifest.getRefCount() <= 0;
+                return deleted[0] ? null : manifest;
+            });
+            return deleted[0] ? 1 : 0;
+        });
+        when(repository.saveAndFlush(any(ChunkManifest.class))).thenAnswer(call -> {
+            ChunkManifest manifest = call.getArgument(0);
+            if (manifests.putIfAbsent(manifest.getHash(), manifest) != null) throw new DataIntegrityViolationException(manifest.getHash());
+            return manifest;
+        });
+        when(repository.findById(anyString())).thenAnswer(call -> Optional.ofNullable(manifests.get(call.<String>getArgument(0))));
+        return repository;
+    }
+
+    // Rows are replaced, not mutated, so readers of the map never see a half-updated one
+    private static Blob withRefCount(Blob blob, long refCount) {
+        return new Blob(blob.getHash(), blob.getSize(), refCount, blob.getWrappedKey(), blob.getEncoding(),
+                blob.getStoredSize(), blob.getCreatedAt(), false);
+    }
+
+    private static ChunkManifest withRefCount(ChunkManifest manifest, long refCount) {
+        return new ChunkManifest(manifest.getHash(), manifest.getSize(), manifest.getChunkCount(), refCount,
+                manifest.getChunks(), manifest.getStoredSize(), manifest.getCreatedAt(), false);
+    }
+
+    private static byte[] read(StorageEngine engine, String storageKey) throws IOException {
+        try (StoredContent content = engine.open(storageKey)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            content.transferTo(0, content.size(), Channels.newChannel(out));
+            return out.toByteArray();
+        }
+    }
+
+    private static List<Path> files(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            return walk.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256(byte[] content) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
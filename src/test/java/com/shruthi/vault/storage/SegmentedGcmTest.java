@@ -0,0 +1,121 @@
+package com.shruthi.vault.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips through the segmented format at the segment boundaries, range reads, and
+ * tampering that must fail authentication.
+ */
+class SegmentedGcmTest {
+
+    private static final int SEGMENT = 64;
+    private static final int SEALED = SEGMENT + SegmentedGcm.TAG_SIZE;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(3);
+    private final SecretKey key = new SecretKeySpec(randomBytes(32), "AES");
+
+    @Test
+    void contentOfEveryShapeRoundTrips() throws IOException {
+        for (int size : new int[]{0, 1, SEGMENT, 3 * SEGMENT, 2 * SEGMENT + 17}) {
+            byte[] content = randomBytes(size);
+            Path file = encrypt(content);
+            int segments = Math.max(1, (size + SEGMENT - 1) / SEGMENT);
+            assertEquals(SegmentedGcm.HEADER_SIZE + size + (long) segments * SegmentedGcm.TAG_SIZE, Files.size(file), "size " + size);
+            assertArrayEquals(content, decrypt(file, 0, Long.MAX_VALUE), "size " + size);
+        }
+    }
+
+    @Test
+    void rangeReadsDecryptAcrossSegments() throws IOException {
+        byte[] content = randomBytes(3 * SEGMENT + 5);
+        Path file = encrypt(content);
+
+        assertArrayEquals(Arrays.copyOfRange(content, SEGMENT - 10, 2 * SEGMENT + 10), decrypt(file, SEGMENT - 10, SEGMENT + 20));
+        // Past the end is cut off
+        assertArrayEquals(Arrays.copyOfRange(content, 3 * SEGMENT, content.length), decrypt(file, 3 * SEGMENT, 100));
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            SegmentedGcm.Reader reader = new SegmentedGcm.Reader(channel, key);
+            ByteBuffer target = ByteBuffer.allocate(30);
+            // A read stops at the end of the segment holding its position
+            assertEquals(10, reader.read(SEGMENT - 10, target));
+            assertEquals(20, reader.read(SEGMENT, target));
+            assertArrayEquals(Arrays.copyOfRange(content, SEGMENT - 10, SEGMENT + 20), target.array());
+            assertEquals(-1, reader.read(content.length, ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void truncationAtASegmentBoundaryFailsAuthentication() throws IOException {
+        Path file = encrypt(randomBytes(3 * SEGMENT));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(SegmentedGcm.HEADER_SIZE + 2L * SEALED);
+        }
+        // The segment now last was not sealed as the last one
+        assertThrows(IOException.class, () -> decrypt(file, 0, Long.MAX_VALUE));
+
+        Path empty = encrypt(new byte[0]);
+        try (FileChannel channel = FileChannel.open(empty, StandardOpenOption.WRITE)) {
+            channel.truncate(SegmentedGcm.HEADER_SIZE);
+        }
+        assertThrows(IOException.class, () -> decrypt(empty, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void reorderedSegmentsFailAuthentication() throws IOException {
+        Path file = encrypt(randomBytes(3 * SEGMENT));
+        byte[] bytes = Files.readAllBytes(file);
+        byte[] first = Arrays.copyOfRange(bytes, SegmentedGcm.HEADER_SIZE, SegmentedGcm.HEADER_SIZE + SEALED);
+        System.arraycopy(bytes, SegmentedGcm.HEADER_SIZE + SEALED, bytes, SegmentedGcm.HEADER_SIZE, SEALED);
+        System.arraycopy(first, 0, bytes, SegmentedGcm.HEADER_SIZE + SEALED, SEALED);
+        Files.write(file, bytes);
+
+        assertThrows(IOException.class, () -> decrypt(file, 0, SEGMENT));
+    }
+
+    private Path encrypt(byte[] content) throws IOException {
+        Path file = Files.createTempFile(dir, "blob-", ".enc");
+        try (OutputStream out = SegmentedGcm.encryptingStream(Files.newOutputStream(file), key, SEGMENT)) {
+            // Odd-sized writes, so segments fill across write calls
+            for (int off = 0; off < content.length; off += 7) {
+                out.write(content, off, Math.min(7, content.length - off));
+            }
+        }
+        return file;
+    }
+
+    private byte[] decrypt(Path file, long position, long count) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            SegmentedGcm.Reader reader = new SegmentedGcm.Reader(channel, key);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            reader.transferTo(position, count == Long.MAX_VALUE ? reader.size() : count, Channels.newChannel(out));
+            return out.toByteArray();
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}